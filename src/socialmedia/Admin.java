@@ -5,6 +5,7 @@ import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
 import java.time.LocalDateTime;
+import java.time.YearMonth;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
 import java.util.Scanner;
@@ -36,7 +37,8 @@ public class Admin extends User implements SocialMediaActions{
         System.out.println("6. Schedule Post");
         System.out.println("7. View Analytics");
         System.out.println("8. Generate Reports");
-        System.out.println("9. Exit");
+        System.out.println("9. Import Scheduled Posts");
+        System.out.println("10. Exit");
         System.out.println("----------------------------------------\n");
     }
 
@@ -54,32 +56,87 @@ public class Admin extends User implements SocialMediaActions{
         System.out.println("Example: 2025-08-16 14:30");
         String timeInput = sc.nextLine();
         
+        System.out.println("Repeat rule (e.g. '0 9 * * MON-FRI' or 'every 3h'), or press Enter for a one-off post:");
+        String ruleSpec = sc.nextLine().trim();
+        
         try {
-            LocalDateTime scheduledTime = LocalDateTime.parse(timeInput, 
-                DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm"));
+            DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+            LocalDateTime scheduledTime = LocalDateTime.parse(timeInput, formatter);
             
             if (scheduledTime.isBefore(LocalDateTime.now())) {
                 System.out.println("❌ Cannot schedule posts in the past!");
                 return;
             }
             
+            String[] platforms;
             if (platformChoice.equalsIgnoreCase("Both")) {
-                postScheduler.schedulePost(username, content, scheduledTime, "Instagram");
-                postScheduler.schedulePost(username, content, scheduledTime, "X");
+                platforms = new String[] {"Instagram", "X"};
             } else if (platformChoice.equalsIgnoreCase("Instagram") || 
                        platformChoice.equalsIgnoreCase("X")) {
-                postScheduler.schedulePost(username, content, scheduledTime, platformChoice);
+                platforms = new String[] {platformChoice};
             } else {
                 System.out.println("❌ Invalid platform choice!");
                 return;
             }
             
+            if (ruleSpec.isEmpty()) {
+                for (String platform : platforms) {
+                    postScheduler.schedulePost(username, content, scheduledTime, platform);
+                }
+            } else {
+                System.out.println("End date (yyyy-MM-dd HH:mm), number of posts, or press Enter to repeat indefinitely:");
+                String limit = sc.nextLine().trim();
+                LocalDateTime end = null;
+                int maxOccurrences = 0;
+                if (limit.matches("\\d+")) {
+                    maxOccurrences = Integer.parseInt(limit);
+                } else if (!limit.isEmpty()) {
+                    end = LocalDateTime.parse(limit, formatter);
+                }
+                for (String platform : platforms) {
+                    postScheduler.scheduleRecurring(username, content, platform, ruleSpec, scheduledTime, end, maxOccurrences);
+                }
+            }
+            
             // Record analytics for scheduling activity
             analyticsEngine.recordMetric(username, platformChoice, "scheduled_posts", 1, 
                 "scheduled_" + System.currentTimeMillis());
             
         } catch (DateTimeParseException e) {
             System.out.println("❌ Invalid date format! Please use: yyyy-MM-dd HH:mm");
+        } catch (IllegalArgumentException e) {
+            System.out.println("❌ Invalid repeat rule: " + e.getMessage());
+        }
+    }
+    
+    public void handleImportScheduledPosts(Scanner sc) {
+        System.out.println("\n📥 IMPORT SCHEDULED POSTS");
+        System.out.println("========================================");
+        System.out.println("CSV (Username,Content,ScheduledTime,Platform) or JSON lines");
+        System.out.println("({\"user\":...,\"content\":...,\"time\":\"yyyy-MM-dd HH:mm\",\"platform\":...})");
+        System.out.println("Enter file path:");
+        String path = sc.nextLine().trim();
+        
+        File file = new File(path);
+        if (!file.isFile()) {
+            System.out.println("❌ File not found: " + path);
+            return;
+        }
+        try {
+            ScheduleImport.Result result = postScheduler.importScheduledPosts(file);
+            System.out.println("✅ " + result);
+            for (String error : result.errors) {
+                System.out.println("   ❌ " + error);
+            }
+            if (result.rejected > result.errors.size()) {
+                System.out.println("   ... and " + (result.rejected - result.errors.size()) + " more rejected lines");
+            }
+            if (result.getScheduled() > 0) {
+                analyticsEngine.recordMetric(username, "Both", "scheduled_posts", result.getScheduled(),
+                    "imported_" + System.currentTimeMillis());
+            }
+        } catch (IOException e) {
+            System.out.println("❌ Import of " + path + " failed: " + e.getMessage());
         }
     }
     
@@ -104,7 +161,7 @@ public class Admin extends User implements SocialMediaActions{
                     analyticsEngine.displayTrendAnalysis(username, 7);
                     break;
                 case 3:
-                    postScheduler.displayScheduledPosts(username);
+                    browseScheduledPosts(mainScanner);
                     break;
                 case 4:
                     analyticsEngine.simulateAnalyticsData(username);
@@ -119,6 +176,44 @@ public class Admin extends User implements SocialMediaActions{
         }
     }
     
+    // Pages through pending posts, with a switch to the published archive
+    private void browseScheduledPosts(Scanner sc) {
+        boolean archived = false;
+        YearMonth month = null;
+        int page = 1;
+        while (true) {
+            int pages = archived
+                ? postScheduler.displayArchivedPosts(username, month, page)
+                : postScheduler.displayScheduledPosts(username, page);
+            System.out.println(archived
+                ? "[n]ext page, [p]revious page, [s]cheduled posts, [b]ack"
+                : "[n]ext page, [p]revious page, [a]rchived posts, [b]ack");
+            String input = sc.nextLine().trim().toLowerCase();
+            
+            if (input.equals("n")) {
+                page = Math.min(page + 1, Math.max(1, pages));
+            } else if (input.equals("p")) {
+                page = Math.max(1, page - 1);
+            } else if (input.equals("a") && !archived) {
+                System.out.println("Month to show (yyyy-MM), or Enter for all months:");
+                String monthInput = sc.nextLine().trim();
+                try {
+                    month = monthInput.isEmpty() ? null : YearMonth.parse(monthInput);
+                } catch (DateTimeParseException e) {
+                    System.out.println("❌ Invalid month! Showing all months.");
+                    month = null;
+                }
+                archived = true;
+                page = 1;
+            } else if (input.equals("s") && archived) {
+                archived = false;
+                page = 1;
+            } else {
+                return;
+            }
+        }
+    }
+    
     public void generateReports(Scanner mainScanner) {
         System.out.println("\n*** REPORTS CENTER ***");
         System.out.println("========================================");
@@ -352,4 +447,10 @@ public class Admin extends User implements SocialMediaActions{
         System.out.println("Comment added successfully!");
     }
 
+    // Stops background work and persists pending analytics/scheduler state
+    public void shutdown() {
+        postScheduler.shutdown();
+        analyticsEngine.shutdown();
+    }
+
 }
@@ -3,18 +3,130 @@ package socialmedia;
 import java.io.*;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.time.format.ResolverStyle;
+import java.time.temporal.ChronoUnit;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 public class AnalyticsEngine {
     private static final String ANALYTICS_LOG = "profiles/logs/analytics_data.csv";
+    private static final String ANALYTICS_JOURNAL = "profiles/logs/analytics_journal.csv";
+    private static final String ANALYTICS_ROLLUPS = "profiles/logs/analytics_rollups.csv";
+    private static final String ANALYTICS_SEGMENTS = "profiles/logs/segments";
     private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+    // Rejects impossible dates like 2024-02-31 instead of clamping them, as AnalyticsLogLoader does
+    private static final DateTimeFormatter STRICT_FORMATTER =
+        DateTimeFormatter.ofPattern("uuuu-MM-dd HH:mm").withResolverStyle(ResolverStyle.STRICT);
+    private static final long READ_YOUR_WRITES_TIMEOUT_MILLIS = 5000;
+    private static final long RETENTION_INTERVAL_MILLIS = 6 * 60 * 60 * 1000L;
+    private static final long RETENTION_FIRST_RUN_MILLIS = 60 * 1000L;
     
-    private Map<String, List<AnalyticsEntry>> userAnalytics;
+    // Where compacted journal rows are written; both formats are always read on load
+    public enum StorageFormat { CSV, SEGMENT }
+    
+    private AnalyticsStore userAnalytics;
+    private AnalyticsJournal journal;
+    private SegmentDirectory segments;
+    private RollupFile rollupFile;
+    private long rollupCoveredRows; // raw rows already folded into the persisted rollups
+    private AnalyticsRetention retention;
+    private ScheduledExecutorService retentionScheduler;
+    
+    // The ingest thread is the only writer; reports and queries share the read lock
+    private final ReentrantReadWriteLock storeLock = new ReentrantReadWriteLock();
+    private MetricIngestor ingestor;
     
     public AnalyticsEngine() {
-        this.userAnalytics = new HashMap<>();
+        this(StorageFormat.CSV);
+    }
+    
+    public AnalyticsEngine(StorageFormat storageFormat) {
+        this.userAnalytics = new AnalyticsStore();
+        this.journal = new AnalyticsJournal(ANALYTICS_LOG, ANALYTICS_JOURNAL);
+        this.segments = new SegmentDirectory(ANALYTICS_SEGMENTS);
+        this.rollupFile = new RollupFile(ANALYTICS_ROLLUPS);
+        if (storageFormat == StorageFormat.SEGMENT) {
+            journal.setCompactionTarget(segments);
+        }
+        this.retention = new AnalyticsRetention(new File(ANALYTICS_LOG), segments);
         loadAnalyticsData();
+        journal.startBackgroundTasks();
+        this.ingestor = new MetricIngestor(this::applyBatch);
+        startRetention();
+    }
+    
+    private void startRetention() {
+        retentionScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "AnalyticsRetention");
+            t.setDaemon(true);
+            return t;
+        });
+        retentionScheduler.scheduleWithFixedDelay(() -> {
+            try {
+                runRetention();
+            } catch (IOException e) {
+                System.err.println("Error applying analytics retention: " + e.getMessage());
+            }
+        }, RETENTION_FIRST_RUN_MILLIS, RETENTION_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+    
+    public void setRetentionPolicy(RetentionPolicy policy) {
+        retention.setPolicy(policy);
+    }
+    
+    /**
+     * Downsamples the compacted files according to the retention policy, then swaps the
+     * thinned points into the in-memory series so heap use shrinks along with the files.
+     * The same pass drops minute and hour rollups past the raw and hourly periods, folds
+     * old day sketches into months and rewrites the rollup snapshot to match.
+     * Runs with journal compaction held off; readers only wait for the final swap.
+     */
+    public AnalyticsRetention.Result runRetention() throws IOException {
+        long now = MetricSeries.toEpochSecond(LocalDateTime.now());
+        RetentionPolicy policy = retention.getPolicy();
+        return journal.runExclusive(() -> {
+            AnalyticsRetention.Result result = retention.run(now, policy);
+            
+            // The compacted files cannot change while we hold off compaction, so load them unlocked
+            AnalyticsStore reloaded = result.changed() ? new AnalyticsStore() : null;
+            AnalyticsLogLoader.RowSink sink = reloaded == null ? null : reloaded::add;
+            if (reloaded != null) {
+                File file = new File(ANALYTICS_LOG);
+                if (file.exists()) {
+                    new AnalyticsLogLoader().load(file, sink);
+                }
+                segments.load(sink);
+            }
+            
+            // Journal rows and the swap must not interleave with an ingest batch
+            int trimmed;
+            storeLock.writeLock().lock();
+            try {
+                if (reloaded != null) {
+                    journal.flush();
+                    journal.replay((username, parts) -> addLoadedRow(parts, sink));
+                    userAnalytics.replacePoints(reloaded);
+                    rollupCoveredRows = 0;
+                }
+                trimmed = userAnalytics.applyRetention(policy, now);
+            } finally {
+                storeLock.writeLock().unlock();
+            }
+            if (reloaded != null || trimmed > 0) saveRollups();
+            return result;
+        });
+    }
+    
+    public AnalyticsJournal getJournal() {
+        return journal;
+    }
+    
+    public MetricIngestor.IngestStats getIngestStats() {
+        return ingestor.getStats();
     }
     
     // Data classes for analytics
@@ -34,6 +146,17 @@ public class AnalyticsEngine {
         }
     }
     
+    // One metric sample on its way through the ingest queue
+    public static class MetricEvent {
+        public final String username;
+        public final AnalyticsEntry entry;
+        
+        public MetricEvent(String username, AnalyticsEntry entry) {
+            this.username = username;
+            this.entry = entry;
+        }
+    }
+    
     public static class TrendAnalysis {
         public final String metric;
         public final String platform;
@@ -54,15 +177,74 @@ public class AnalyticsEngine {
     }
     
     public void recordMetric(String username, String platform, String metricType, int value, String contentId) {
-        AnalyticsEntry entry = new AnalyticsEntry(LocalDateTime.now(), platform, metricType, value, contentId);
-        userAnalytics.computeIfAbsent(username, k -> new ArrayList<>()).add(entry);
-        saveAnalyticsData();
+        // The log stores minute precision, so keep memory and rollups at the same precision
+        AnalyticsEntry entry = new AnalyticsEntry(LocalDateTime.now().truncatedTo(ChronoUnit.MINUTES),
+            platform, metricType, value, contentId);
+        ingestor.submit(new MetricEvent(username, entry));
+    }
+    
+    /**
+     * Queues many samples at once. Safe to call from any number of threads;
+     * the events become visible to reports once the ingest thread has applied them.
+     */
+    public void recordMetrics(Collection<MetricEvent> events) {
+        ingestor.submitAll(events);
+    }
+    
+    // Runs on the ingest thread: one write-lock hold and one journal flush per batch
+    private void applyBatch(List<MetricEvent> batch) {
+        storeLock.writeLock().lock();
+        try {
+            for (MetricEvent event : batch) {
+                addEntry(event.username, event.entry);
+            }
+            // Under the same lock, so a store reload never sees the batch in memory but not in the journal
+            journal.appendAll(batch);
+        } finally {
+            storeLock.writeLock().unlock();
+        }
+    }
+    
+    // Lets a caller read its own recent writes, then holds off the ingest thread while reading
+    private void beginRead() {
+        if (ingestor != null && !ingestor.awaitApplied(READ_YOUR_WRITES_TIMEOUT_MILLIS)) {
+            System.err.println("Analytics ingest is behind; report may miss recent metrics");
+        }
+        storeLock.readLock().lock();
+    }
+    
+    private void endRead() {
+        storeLock.readLock().unlock();
+    }
+    
+    private void addEntry(String username, AnalyticsEntry entry) {
+        addPoint(username, entry.platform, entry.metricType,
+            MetricSeries.toEpochSecond(entry.timestamp), entry.value, entry.contentId);
+    }
+    
+    private void addPoint(String username, String platform, String metricType,
+                          long epochSecond, int value, String contentId) {
+        // Rows up to the snapshot watermark are already part of the loaded rollups
+        boolean coveredBySnapshot = userAnalytics.getTotalPoints() < rollupCoveredRows;
+        MetricSeries series = userAnalytics.add(username, platform, metricType, epochSecond, value, contentId);
+        if (!coveredBySnapshot) {
+            series.getRollup().add(epochSecond, value);
+        }
     }
     
     public void generateUserReport(String username) {
-        List<AnalyticsEntry> entries = userAnalytics.getOrDefault(username, new ArrayList<>());
+        beginRead();
+        try {
+            printUserReport(username);
+        } finally {
+            endRead();
+        }
+    }
+    
+    private void printUserReport(String username) {
+        Map<String, Map<String, MetricSeries>> userSeries = userAnalytics.getUserSeries(username);
         
-        if (entries.isEmpty()) {
+        if (userSeries.isEmpty()) {
             System.out.println("\n*** ANALYTICS OVERVIEW ***");
             System.out.println("========================================");
             System.out.println("No analytics data available yet.");
@@ -74,30 +256,18 @@ public class AnalyticsEngine {
         System.out.println("========================================");
         
         // Simple platform summary
-        Map<String, List<AnalyticsEntry>> byPlatform = entries.stream()
-            .collect(Collectors.groupingBy(e -> e.platform));
-        
-        for (Map.Entry<String, List<AnalyticsEntry>> platformEntry : byPlatform.entrySet()) {
+        for (Map.Entry<String, Map<String, MetricSeries>> platformEntry : userSeries.entrySet()) {
             String platform = platformEntry.getKey();
-            List<AnalyticsEntry> platformEntries = platformEntry.getValue();
+            Map<String, MetricSeries> metrics = platformEntry.getValue();
             
             System.out.println("\n>> " + platform.toUpperCase() + " SUMMARY:");
             System.out.println("----------------------------------------");
             
             // Get latest numbers for each metric
-            Map<String, Integer> latestMetrics = platformEntries.stream()
-                .collect(Collectors.groupingBy(
-                    e -> e.metricType,
-                    Collectors.collectingAndThen(
-                        Collectors.maxBy(Comparator.comparing(e -> e.timestamp)),
-                        opt -> opt.map(e -> e.value).orElse(0)
-                    )
-                ));
-            
-            System.out.println("Followers: " + latestMetrics.getOrDefault("followers", 0));
-            System.out.println("Likes: " + latestMetrics.getOrDefault("likes", 0));
-            System.out.println("Comments: " + latestMetrics.getOrDefault("comments", 0));
-            System.out.println("Shares: " + latestMetrics.getOrDefault("shares", 0));
+            System.out.println("Followers: " + latestValue(metrics.get("followers")));
+            System.out.println("Likes: " + latestValue(metrics.get("likes")));
+            System.out.println("Comments: " + latestValue(metrics.get("comments")));
+            System.out.println("Shares: " + latestValue(metrics.get("shares")));
         }
         
         System.out.println("\n*** QUICK INSIGHTS ***");
@@ -107,43 +277,48 @@ public class AnalyticsEngine {
         System.out.println("✓ Use option 3 to check scheduled posts");
     }
     
+    // Kept up to date by every add, so the overview costs the same for any history length
+    private int latestValue(MetricSeries series) {
+        if (series == null || series.size() == 0) return 0;
+        return series.getLatestValue();
+    }
+    
     public List<TrendAnalysis> analyzeTrends(String username, int daysBack) {
-        List<AnalyticsEntry> entries = userAnalytics.getOrDefault(username, new ArrayList<>());
-        LocalDateTime cutoff = LocalDateTime.now().minusDays(daysBack);
-        
-        List<AnalyticsEntry> recentEntries = entries.stream()
-            .filter(e -> e.timestamp.isAfter(cutoff))
-            .collect(Collectors.toList());
-        
+        beginRead();
+        try {
+            return collectTrends(username, daysBack);
+        } finally {
+            endRead();
+        }
+    }
+    
+    private List<TrendAnalysis> collectTrends(String username, int daysBack) {
+        return collectTrends(username, MetricSeries.toEpochSecond(LocalDateTime.now().minusDays(daysBack)));
+    }
+    
+    private List<TrendAnalysis> collectTrends(String username, long cutoff) {
         List<TrendAnalysis> trends = new ArrayList<>();
         
-        // Group by platform and metric
-        Map<String, Map<String, List<AnalyticsEntry>>> grouped = recentEntries.stream()
-            .collect(Collectors.groupingBy(
-                e -> e.platform,
-                Collectors.groupingBy(e -> e.metricType)
-            ));
-        
-        for (Map.Entry<String, Map<String, List<AnalyticsEntry>>> platformEntry : grouped.entrySet()) {
+        for (Map.Entry<String, Map<String, MetricSeries>> platformEntry : userAnalytics.getUserSeries(username).entrySet()) {
             String platform = platformEntry.getKey();
             
-            for (Map.Entry<String, List<AnalyticsEntry>> metricEntry : platformEntry.getValue().entrySet()) {
+            for (Map.Entry<String, MetricSeries> metricEntry : platformEntry.getValue().entrySet()) {
                 String metric = metricEntry.getKey();
-                List<AnalyticsEntry> metricData = metricEntry.getValue()
-                    .stream()
-                    .sorted(Comparator.comparing(e -> e.timestamp))
-                    .collect(Collectors.toList());
+                MetricSeries series = metricEntry.getValue();
                 
-                if (metricData.size() >= 2) {
-                    AnalyticsEntry first = metricData.get(0);
-                    AnalyticsEntry last = metricData.get(metricData.size() - 1);
-                    
-                    int totalChange = last.value - first.value;
-                    double growthRate = first.value == 0 ? 0 : 
-                        ((double) totalChange / first.value) * 100;
+                // Series are time ordered, so the window bounds are two binary searches
+                SeriesView window = series.range(cutoff + 1, Long.MAX_VALUE);
+                
+                if (window.size() >= 2) {
+                    int first = window.valueAt(0);
+                    int last = window.valueAt(window.size() - 1);
+                    int totalChange = last - first;
+                    double growthRate = first == 0 ? 0 : 
+                        ((double) totalChange / first) * 100;
                     
                     trends.add(new TrendAnalysis(metric, platform, growthRate, totalChange, 
-                        first.timestamp, last.timestamp));
+                        MetricSeries.toLocalDateTime(window.timestampAt(0)),
+                        MetricSeries.toLocalDateTime(window.timestampAt(window.size() - 1))));
                 }
             }
         }
@@ -151,7 +326,73 @@ public class AnalyticsEngine {
         return trends;
     }
     
+    /**
+     * Trends and activity for every tracked account, merged into platform-level aggregates.
+     * Users are split across the common fork/join pool; each worker folds its users into a
+     * private partial report and the partials are merged pairwise, so no shared state is locked.
+     */
+    public OrgReport generateOrgReport(int daysBack) {
+        beginRead();
+        try {
+            long started = System.currentTimeMillis();
+            long cutoff = MetricSeries.toEpochSecond(LocalDateTime.now().minusDays(daysBack));
+            List<String> usernames = new ArrayList<>(userAnalytics.usernames());
+            
+            OrgReport report = usernames.parallelStream().collect(
+                () -> new OrgReport(daysBack),
+                (partial, username) -> partial.addUser(username, userAnalytics.getUserSeries(username),
+                    collectTrends(username, cutoff), cutoff),
+                OrgReport::merge);
+            
+            report.setTiming(System.currentTimeMillis() - started, ForkJoinPool.getCommonPoolParallelism());
+            return report;
+        } finally {
+            endRead();
+        }
+    }
+    
+    /**
+     * Current statistics of one series over a sliding window: moving average, EWMA and growth.
+     * Maintained as metrics arrive, so this never touches the stored history.
+     */
+    public SlidingWindow.WindowStats liveStats(String username, String platform, String metricType,
+                                               SlidingWindow.Span span) {
+        beginRead();
+        try {
+            MetricSeries series = userAnalytics.getSeries(username, platform, metricType);
+            if (series == null) return new SlidingWindow(span).stats(0);
+            return series.getWindow(span).stats(MetricSeries.toEpochSecond(LocalDateTime.now()));
+        } finally {
+            endRead();
+        }
+    }
+    
+    // Trends from the sliding windows; same shape as analyzeTrends, but the window may start
+    // up to span / SlidingWindow.SLOTS early, so it suits monitoring rather than the report
+    public List<TrendAnalysis> liveTrends(String username, SlidingWindow.Span span) {
+        beginRead();
+        try {
+            long now = MetricSeries.toEpochSecond(LocalDateTime.now());
+            List<TrendAnalysis> trends = new ArrayList<>();
+            for (Map.Entry<String, Map<String, MetricSeries>> platformEntry : userAnalytics.getUserSeries(username).entrySet()) {
+                for (Map.Entry<String, MetricSeries> metricEntry : platformEntry.getValue().entrySet()) {
+                    SlidingWindow.WindowStats stats = metricEntry.getValue().getWindow(span).stats(now);
+                    if (stats.count >= 2) {
+                        trends.add(new TrendAnalysis(metricEntry.getKey(), platformEntry.getKey(),
+                            stats.getGrowthRate(), stats.getTotalChange(),
+                            MetricSeries.toLocalDateTime(stats.firstTime), MetricSeries.toLocalDateTime(stats.lastTime)));
+                    }
+                }
+            }
+            return trends;
+        } finally {
+            endRead();
+        }
+    }
+    
     public void displayTrendAnalysis(String username, int daysBack) {
+        // Exact window edge: the sliding windows can reach up to one slot further back, and
+        // the series range is only two binary searches per metric anyway
         List<TrendAnalysis> trends = analyzeTrends(username, daysBack);
         
         if (trends.isEmpty()) {
@@ -203,142 +444,270 @@ public class AnalyticsEngine {
         System.out.println("• Engage with your followers' comments");
     }
     
+    // One account from the benchmark generator, ending now; seeded by name so reruns are repeatable
     public void simulateAnalyticsData(String username) {
-        Random random = new Random();
-        String[] platforms = {"Instagram", "X"};
-        String[] metrics = {"followers", "likes", "comments", "shares"};
-        
         System.out.println(">> Generating sample analytics data...");
         
-        for (int day = 30; day >= 0; day--) {
-            LocalDateTime timestamp = LocalDateTime.now().minusDays(day);
-            
-            for (String platform : platforms) {
-                for (String metric : metrics) {
-                    int baseValue = getBaseValue(metric);
-                    int variation = random.nextInt(baseValue / 5) - (baseValue / 10);
-                    int value = Math.max(1, baseValue + variation);
-                    
-                    AnalyticsEntry entry = new AnalyticsEntry(timestamp, platform, metric, 
-                        value, "content_" + day + "_" + metric);
-                    userAnalytics.computeIfAbsent(username, k -> new ArrayList<>()).add(entry);
+        WorkloadGenerator generator = new WorkloadGenerator(username.hashCode());
+        generator.setDays(31);
+        generator.setSamplesPerDay(4);
+        generator.setChurnRate(0);
+        generator.setLateJoinRate(0);
+        generator.setEnd(LocalDateTime.now());
+        
+        // Content ids embed the user index, so each account needs its own; offset past the
+        // indices of generated benchmark users so the two never share content ids
+        long userIndex = (1L << 32) + Integer.toUnsignedLong(username.hashCode());
+        List<MetricEvent> events = new ArrayList<>();
+        generator.generateUser(userIndex, username, (user, platform, metricType, epochSecond, value, contentId) ->
+            events.add(new MetricEvent(user, new AnalyticsEntry(MetricSeries.toLocalDateTime(epochSecond),
+                platform, metricType, value, contentId))));
+        
+        recordMetrics(events);
+        System.out.println(">> Sample analytics data generated for 30 days!");
+    }
+    
+    private void loadAnalyticsData() {
+        // Finish any interrupted compaction first so the base file is complete
+        journal.recover();
+        rollupCoveredRows = rollupFile.load(userAnalytics, baseSources());
+        boolean rebuild = rollupCoveredRows < 0;
+        if (rebuild) {
+            rollupCoveredRows = Long.MAX_VALUE; // skip rollup updates until the rebuild below
+        }
+        
+        try {
+            File file = new File(ANALYTICS_LOG);
+            if (file.exists()) {
+                AnalyticsLogLoader.LoadSummary summary = new AnalyticsLogLoader().load(file, this::addPoint);
+                System.out.printf(">> Loaded %d analytics rows in %d ms (%.0f rows/sec, %d threads)\n",
+                    summary.rows, summary.elapsedMillis, summary.rowsPerSecond(), summary.threads);
+                if (summary.badRows > 0) {
+                    System.err.println("Skipped " + summary.badRows + " malformed analytics entries");
                 }
             }
+            
+            if (!segments.list().isEmpty()) {
+                long started = System.currentTimeMillis();
+                long rows = segments.load(this::addPoint);
+                System.out.printf(">> Loaded %d analytics rows from segments in %d ms\n",
+                    rows, System.currentTimeMillis() - started);
+            }
+        } catch (IOException e) {
+            System.err.println("Error loading analytics data: " + e.getMessage());
         }
         
-        saveAnalyticsData();
-        System.out.println(">> Sample analytics data generated for 30 days!");
+        // Replay rows recorded since the last compaction
+        journal.replay((username, parts) -> addLoadedRow(parts, this::addPoint));
+        
+        // A missing or stale snapshot is rebuilt from the raw rows
+        if (rebuild || rollupCoveredRows > userAnalytics.getTotalPoints()) {
+            rebuildRollups();
+        }
     }
     
-    private int getBaseValue(String metric) {
-        switch (metric) {
-            case "followers": return 1000;
-            case "likes": return 150;
-            case "comments": return 25;
-            case "shares": return 10;
-            default: return 50;
+    // Identifies the compacted base files; a compaction changes it and invalidates the row watermark
+    private String baseSources() {
+        File file = new File(ANALYTICS_LOG);
+        StringBuilder sources = new StringBuilder("csv:").append(file.exists() ? file.length() : 0);
+        for (File segment : segments.list()) {
+            // Retention rewrites segments in place, so the length is part of the identity
+            sources.append(';').append(segment.getName()).append(':').append(segment.length());
         }
+        return sources.toString();
     }
     
-    private void saveAnalyticsData() {
-        try {
-            File logDir = new File("profiles/logs");
-            if (!logDir.exists()) logDir.mkdirs();
-            
-            try (BufferedWriter writer = new BufferedWriter(new FileWriter(ANALYTICS_LOG))) {
-                writer.write("Username,Timestamp,Platform,MetricType,Value,ContentId");
-                writer.newLine();
-                
-                for (Map.Entry<String, List<AnalyticsEntry>> userEntry : userAnalytics.entrySet()) {
-                    String username = userEntry.getKey();
-                    for (AnalyticsEntry entry : userEntry.getValue()) {
-                        writer.write(String.format("%s,%s,%s,%s,%d,%s",
-                            username,
-                            entry.timestamp.format(FORMATTER),
-                            entry.platform,
-                            entry.metricType,
-                            entry.value,
-                            entry.contentId));
-                        writer.newLine();
+    private void rebuildRollups() {
+        for (String username : userAnalytics.usernames()) {
+            for (Map<String, MetricSeries> metrics : userAnalytics.getUserSeries(username).values()) {
+                for (MetricSeries series : metrics.values()) {
+                    MetricRollup rollup = series.getRollup();
+                    rollup.clear();
+                    for (int i = 0; i < series.size(); i++) {
+                        rollup.add(series.timestampAt(i), series.valueAt(i));
                     }
                 }
             }
-        } catch (IOException e) {
-            System.err.println("Error saving analytics data: " + e.getMessage());
         }
+        rollupCoveredRows = 0;
     }
     
-    private void loadAnalyticsData() {
+    public void saveRollups() {
+        beginRead();
         try {
-            File file = new File(ANALYTICS_LOG);
-            if (!file.exists()) return;
-            
-            try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-                String line = reader.readLine(); // Skip header
-                while ((line = reader.readLine()) != null) {
-                    String[] parts = line.split(",");
-                    if (parts.length >= 6) {
-                        try {
-                            String username = parts[0];
-                            LocalDateTime timestamp = LocalDateTime.parse(parts[1], FORMATTER);
-                            String platform = parts[2];
-                            String metricType = parts[3];
-                            int value = Integer.parseInt(parts[4]);
-                            String contentId = parts[5];
-                            
-                            AnalyticsEntry entry = new AnalyticsEntry(timestamp, platform, metricType, value, contentId);
-                            userAnalytics.computeIfAbsent(username, k -> new ArrayList<>()).add(entry);
-                        } catch (Exception e) {
-                            System.err.println("Error parsing analytics entry: " + e.getMessage());
-                        }
-                    }
+            rollupFile.save(userAnalytics, userAnalytics.getTotalPoints(), baseSources());
+        } finally {
+            endRead();
+        }
+    }
+    
+    /**
+     * Points of one series with from <= timestamp < to.
+     * Found by binary search and returned as a view over the stored columns, without copying.
+     */
+    public SeriesView query(String username, String platform, String metricType,
+                            LocalDateTime from, LocalDateTime to) {
+        beginRead();
+        try {
+            MetricSeries series = userAnalytics.getSeries(username, platform, metricType);
+            if (series == null) return SeriesView.empty();
+            return series.range(MetricSeries.toEpochSecond(from), MetricSeries.toEpochSecond(to));
+        } finally {
+            endRead();
+        }
+    }
+    
+    public String decodeContentId(int code) {
+        beginRead();
+        try {
+            return userAnalytics.decodeContentId(code);
+        } finally {
+            endRead();
+        }
+    }
+    
+    // Bucketed aggregate of one series over [from, to), read from the rollups
+    public RollupBucket aggregate(String username, String platform, String metricType,
+                                  LocalDateTime from, LocalDateTime to) {
+        beginRead();
+        try {
+            MetricSeries series = userAnalytics.getSeries(username, platform, metricType);
+            if (series == null) return new RollupBucket();
+            return series.getRollup().aggregate(MetricSeries.toEpochSecond(from), MetricSeries.toEpochSecond(to));
+        } finally {
+            endRead();
+        }
+    }
+    
+    /**
+     * Distinct content and value quantiles of one series over the days overlapping [from, to).
+     * Answered by merging per-day sketches, so the cost does not grow with the number of points.
+     */
+    public MetricSketch sketch(String username, String platform, String metricType,
+                               LocalDateTime from, LocalDateTime to) {
+        beginRead();
+        try {
+            MetricSeries series = userAnalytics.getSeries(username, platform, metricType);
+            if (series == null) return new MetricSketch();
+            return series.getSketches().merged(MetricSeries.toEpochSecond(from), MetricSeries.toEpochSecond(to));
+        } finally {
+            endRead();
+        }
+    }
+    
+    // Same as sketch(...) but merged across every account
+    public MetricSketch sketchAllUsers(String platform, String metricType, LocalDateTime from, LocalDateTime to) {
+        beginRead();
+        try {
+            long fromSecond = MetricSeries.toEpochSecond(from);
+            long toSecond = MetricSeries.toEpochSecond(to);
+            MetricSketch result = new MetricSketch();
+            for (String username : userAnalytics.usernames()) {
+                MetricSeries series = userAnalytics.getSeries(username, platform, metricType);
+                if (series != null) {
+                    series.getSketches().mergeInto(result, fromSecond, toSecond);
                 }
             }
-        } catch (IOException e) {
-            System.err.println("Error loading analytics data: " + e.getMessage());
+            return result;
+        } finally {
+            endRead();
         }
     }
     
+    private void addLoadedRow(String[] parts, AnalyticsLogLoader.RowSink sink) {
+        try {
+            String username = parts[0];
+            LocalDateTime timestamp = LocalDateTime.parse(parts[1], STRICT_FORMATTER);
+            String platform = parts[2];
+            String metricType = parts[3];
+            int value = Integer.parseInt(parts[4]);
+            String contentId = parts[5];
+            
+            sink.accept(username, platform, metricType, MetricSeries.toEpochSecond(timestamp), value, contentId);
+        } catch (Exception e) {
+            System.err.println("Error parsing analytics entry: " + e.getMessage());
+        }
+    }
+    
+    public void shutdown() {
+        retentionScheduler.shutdown();
+        try {
+            // A run in progress finishes so the files and the rollup snapshot agree
+            retentionScheduler.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Drain queued metrics into the store and journal before closing it
+        ingestor.shutdown();
+        journal.shutdown();
+        saveRollups();
+    }
+    
     public void generatePerformanceReport(String username) {
+        beginRead();
+        try {
+            printPerformanceReport(username);
+        } finally {
+            endRead();
+        }
+    }
+    
+    private void printPerformanceReport(String username) {
         System.out.println("\n*** ACCOUNT PERFORMANCE SUMMARY ***");
         System.out.println("========================================");
         
-        List<AnalyticsEntry> entries = userAnalytics.getOrDefault(username, new ArrayList<>());
+        Map<String, Map<String, MetricSeries>> userSeries = userAnalytics.getUserSeries(username);
         
-        if (entries.isEmpty()) {
+        if (userSeries.isEmpty()) {
             System.out.println("📈 No performance data available yet.");
             System.out.println("💡 Try generating sample data first (option 4)!");
             return;
         }
         
-        System.out.printf("📊 Total Activity Records: %d\n", entries.size());
+        long totalRecords = 0;
+        for (Map<String, MetricSeries> metrics : userSeries.values()) {
+            for (MetricSeries series : metrics.values()) {
+                totalRecords += series.size();
+            }
+        }
+        System.out.printf("📊 Total Activity Records: %d\n", totalRecords);
         
         // Simple engagement summary
-        Map<String, List<AnalyticsEntry>> byPlatform = entries.stream()
-            .collect(Collectors.groupingBy(e -> e.platform));
-            
         System.out.println("\n🎯 PLATFORM ACTIVITY:");
         System.out.println("----------------------------------------");
-        for (String platform : byPlatform.keySet()) {
-            int platformActivity = byPlatform.get(platform).size();
-            System.out.printf("� %s: %d activities tracked\n", platform, platformActivity);
+        for (Map.Entry<String, Map<String, MetricSeries>> platformEntry : userSeries.entrySet()) {
+            long platformActivity = 0;
+            for (MetricSeries series : platformEntry.getValue().values()) {
+                platformActivity += series.size();
+            }
+            System.out.printf("� %s: %d activities tracked\n", platformEntry.getKey(), platformActivity);
         }
         
         // Get most recent metrics
-        if (!entries.isEmpty()) {
-            AnalyticsEntry latest = entries.stream()
-                .max(Comparator.comparing(e -> e.timestamp))
-                .orElse(null);
-                
-            if (latest != null) {
-                System.out.println("\n🏆 LATEST ACHIEVEMENT:");
-                System.out.println("----------------------------------------");
-                System.out.printf("� Latest Update: %s\n", latest.timestamp.format(FORMATTER));
-                System.out.printf("📱 Platform: %s\n", latest.platform);
-                System.out.printf("📊 Metric: %s reached %d\n", latest.metricType, latest.value);
+        String latestPlatform = null;
+        String latestMetric = null;
+        MetricSeries latestSeries = null;
+        for (Map.Entry<String, Map<String, MetricSeries>> platformEntry : userSeries.entrySet()) {
+            for (Map.Entry<String, MetricSeries> metricEntry : platformEntry.getValue().entrySet()) {
+                MetricSeries series = metricEntry.getValue();
+                if (series.size() == 0) continue;
+                if (latestSeries == null || series.getLatestTimestamp() > latestSeries.getLatestTimestamp()) {
+                    latestPlatform = platformEntry.getKey();
+                    latestMetric = metricEntry.getKey();
+                    latestSeries = series;
+                }
             }
         }
         
+        if (latestSeries != null) {
+            System.out.println("\n🏆 LATEST ACHIEVEMENT:");
+            System.out.println("----------------------------------------");
+            System.out.printf("� Latest Update: %s\n",
+                MetricSeries.toLocalDateTime(latestSeries.getLatestTimestamp()).format(FORMATTER));
+            System.out.printf("📱 Platform: %s\n", latestPlatform);
+            System.out.printf("📊 Metric: %s reached %d\n", latestMetric, latestSeries.getLatestValue());
+        }
+        
         System.out.println("\n✨ PERFORMANCE HIGHLIGHTS:");
         System.out.println("• Your account is actively tracked ✅");
         System.out.println("• Data collection is working smoothly 📊");
@@ -0,0 +1,101 @@
+package socialmedia;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Converts analytics data between the CSV log and binary segments.
+ *
+ * Usage:
+ *   java socialmedia.AnalyticsFormatConverter csv-to-segment <input.csv> <segmentDir>
+ *   java socialmedia.AnalyticsFormatConverter segment-to-csv <segment file or dir> <output.csv>
+ */
+public class AnalyticsFormatConverter {
+    // Large logs are split so each segment stays comfortably in memory while it is built
+    private static final long MAX_ROWS_PER_SEGMENT = 5_000_000;
+    private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+    
+    public static List<File> csvToSegments(File csv, SegmentDirectory target) throws IOException {
+        List<File> written = new ArrayList<>();
+        AnalyticsSegment.Builder[] builder = {new AnalyticsSegment.Builder()};
+        IOException[] failure = {null};
+        
+        new AnalyticsLogLoader().load(csv, (username, platform, metricType, epochSecond, value, contentId) -> {
+            if (failure[0] != null) return;
+            builder[0].add(username, platform, metricType, epochSecond, value, contentId);
+            if (builder[0].getRowCount() >= MAX_ROWS_PER_SEGMENT) {
+                try {
+                    written.add(target.write(builder[0]));
+                } catch (IOException e) {
+                    failure[0] = e;
+                }
+                builder[0] = new AnalyticsSegment.Builder();
+            }
+        });
+        if (failure[0] != null) throw failure[0];
+        if (!builder[0].isEmpty()) {
+            written.add(target.write(builder[0]));
+        }
+        return written;
+    }
+    
+    public static long segmentsToCsv(List<File> segments, File csv) throws IOException {
+        File dir = csv.getAbsoluteFile().getParentFile();
+        if (dir != null && !dir.exists()) dir.mkdirs();
+        
+        long rows = 0;
+        try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(csv), StandardCharsets.UTF_8), 1 << 16)) {
+            writer.write(AnalyticsJournal.HEADER);
+            writer.newLine();
+            IOException[] failure = {null};
+            for (File segment : segments) {
+                rows += AnalyticsSegment.read(segment, (username, platform, metricType, epochSecond, value, contentId) -> {
+                    if (failure[0] != null) return;
+                    try {
+                        writer.write(username + ',' + MetricSeries.toLocalDateTime(epochSecond).format(FORMATTER) + ','
+                            + platform + ',' + metricType + ',' + value + ',' + contentId);
+                        writer.newLine();
+                    } catch (IOException e) {
+                        failure[0] = e;
+                    }
+                });
+                if (failure[0] != null) throw failure[0];
+            }
+        }
+        return rows;
+    }
+    
+    public static void main(String[] args) {
+        if (args.length != 3) {
+            System.out.println("Usage: AnalyticsFormatConverter csv-to-segment <input.csv> <segmentDir>");
+            System.out.println("       AnalyticsFormatConverter segment-to-csv <segment file or dir> <output.csv>");
+            return;
+        }
+        
+        long started = System.currentTimeMillis();
+        try {
+            if (args[0].equals("csv-to-segment")) {
+                List<File> written = csvToSegments(new File(args[1]), new SegmentDirectory(args[2]));
+                System.out.printf(">> Wrote %d segment(s) in %d ms\n", written.size(), System.currentTimeMillis() - started);
+            } else if (args[0].equals("segment-to-csv")) {
+                File source = new File(args[1]);
+                List<File> segments = new ArrayList<>();
+                if (source.isDirectory()) {
+                    segments.addAll(new SegmentDirectory(args[1]).list());
+                } else {
+                    segments.add(source);
+                }
+                long rows = segmentsToCsv(segments, new File(args[2]));
+                System.out.printf(">> Wrote %d rows in %d ms\n", rows, System.currentTimeMillis() - started);
+            } else {
+                System.out.println("Unknown command: " + args[0]);
+            }
+        } catch (IOException e) {
+            System.err.println("Conversion failed: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,454 @@
+package socialmedia;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+/**
+ * Append-only journal for analytics rows.
+ * New metrics are appended here instead of rewriting the whole analytics log,
+ * and a background task periodically folds the journal back into the base file.
+ */
+public class AnalyticsJournal {
+    static final String HEADER = "Username,Timestamp,Platform,MetricType,Value,ContentId";
+    private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+    private static final String COMPACTING_SUFFIX = ".compacting";
+
+    /**
+     * Where compacted journal rows end up.
+     * Every rotated journal carries a sequence number that only ever grows, and rotations
+     * are merged strictly in order. The target records the last rotation that fully
+     * landed, so recovery can tell a finished merge from an interrupted one; merging a
+     * rotation again after an interruption must not duplicate its rows. With fsync the
+     * target forces its files to disk before recording a rotation as merged.
+     */
+    public interface CompactionTarget {
+        long lastMerged();
+        void merge(File journalRows, long rotation, boolean fsync) throws IOException;
+    }
+
+    // Work that must not overlap a compaction, such as rewriting the compacted files
+    public interface ExclusiveTask<T> {
+        T run() throws IOException;
+    }
+
+    public enum FlushPolicy {
+        EVERY_WRITE, // flush after every append
+        BATCHED,     // flush once batchSize rows are buffered
+        INTERVAL     // flush from the background thread every flushIntervalMillis
+    }
+
+    private final File journalFile;
+    private CompactionTarget compactionTarget;
+    private final Object lock = new Object();
+    private final Object compactionLock = new Object();
+
+    private FlushPolicy flushPolicy = FlushPolicy.EVERY_WRITE;
+    private int batchSize = 256;
+    private long flushIntervalMillis = 1000;
+    private boolean fsync = false;
+    private int compactionThreshold = 10000;
+    private long compactionIntervalMillis = 60000;
+
+    private FileOutputStream journalStream;
+    private BufferedWriter writer;
+    private int bufferedRows;
+    private int journalRows;
+    private long rotationSequence; // highest rotation handed out; guarded by compactionLock
+    private ScheduledExecutorService background;
+
+    public AnalyticsJournal(String basePath, String journalPath) {
+        this.journalFile = new File(journalPath);
+        this.compactionTarget = new CsvBaseTarget(new File(basePath));
+    }
+    
+    public void setCompactionTarget(CompactionTarget compactionTarget) {
+        synchronized (compactionLock) {
+            this.compactionTarget = compactionTarget;
+        }
+    }
+
+    // Configuration - takes effect on the next append / background tick
+    public void setFlushPolicy(FlushPolicy flushPolicy) { this.flushPolicy = flushPolicy; }
+    public void setBatchSize(int batchSize) { this.batchSize = Math.max(1, batchSize); }
+    public void setFlushIntervalMillis(long flushIntervalMillis) { this.flushIntervalMillis = Math.max(1, flushIntervalMillis); }
+    public void setFsync(boolean fsync) { this.fsync = fsync; }
+    public void setCompactionThreshold(int compactionThreshold) { this.compactionThreshold = Math.max(1, compactionThreshold); }
+    public void setCompactionIntervalMillis(long compactionIntervalMillis) { this.compactionIntervalMillis = Math.max(1, compactionIntervalMillis); }
+
+    public int getJournalRows() {
+        synchronized (lock) {
+            return journalRows;
+        }
+    }
+
+    /**
+     * Finishes a compaction that was interrupted by a crash.
+     * Must run before the base file is loaded.
+     */
+    public void recover() {
+        synchronized (compactionLock) {
+            mergePending();
+        }
+    }
+
+    /**
+     * Replays every journal row not yet merged into the base file, oldest first.
+     * Rows from a compaction that could not be recovered are replayed before the live journal.
+     */
+    public void replay(BiConsumer<String, String[]> rowConsumer) {
+        synchronized (lock) {
+            long merged = compactionTarget.lastMerged();
+            for (File file : pendingCompactionFiles()) {
+                if (rotationOf(file) > merged) readRows(file, rowConsumer);
+            }
+            journalRows = readRows(journalFile, rowConsumer);
+        }
+    }
+
+    public void append(String username, AnalyticsEngine.AnalyticsEntry entry) {
+        synchronized (lock) {
+            try {
+                ensureOpen();
+                writer.write(formatRow(username, entry));
+                writer.newLine();
+                bufferedRows++;
+                journalRows++;
+
+                if (flushPolicy == FlushPolicy.EVERY_WRITE
+                        || (flushPolicy == FlushPolicy.BATCHED && bufferedRows >= batchSize)) {
+                    flushLocked();
+                }
+            } catch (IOException e) {
+                System.err.println("Error appending to analytics journal: " + e.getMessage());
+            }
+        }
+    }
+
+    // Writes a batch of rows with a single flush; EVERY_WRITE is honoured once per batch
+    public void appendAll(Collection<AnalyticsEngine.MetricEvent> events) {
+        synchronized (lock) {
+            try {
+                ensureOpen();
+                for (AnalyticsEngine.MetricEvent event : events) {
+                    writer.write(formatRow(event.username, event.entry));
+                    writer.newLine();
+                }
+                bufferedRows += events.size();
+                journalRows += events.size();
+
+                if (flushPolicy == FlushPolicy.EVERY_WRITE
+                        || (flushPolicy == FlushPolicy.BATCHED && bufferedRows >= batchSize)) {
+                    flushLocked();
+                }
+            } catch (IOException e) {
+                System.err.println("Error appending to analytics journal: " + e.getMessage());
+            }
+        }
+    }
+
+    public void flush() {
+        synchronized (lock) {
+            try {
+                flushLocked();
+            } catch (IOException e) {
+                System.err.println("Error flushing analytics journal: " + e.getMessage());
+            }
+        }
+    }
+
+    private void flushLocked() throws IOException {
+        if (writer == null || bufferedRows == 0) return;
+        writer.flush();
+        if (fsync) {
+            journalStream.getChannel().force(false);
+        }
+        bufferedRows = 0;
+    }
+
+    private void ensureOpen() throws IOException {
+        if (writer != null) return;
+        File dir = journalFile.getAbsoluteFile().getParentFile();
+        if (dir != null && !dir.exists()) dir.mkdirs();
+
+        boolean isNewFile = !journalFile.exists() || journalFile.length() == 0;
+        journalStream = new FileOutputStream(journalFile, true);
+        writer = new BufferedWriter(new OutputStreamWriter(journalStream, StandardCharsets.UTF_8));
+        if (isNewFile) {
+            writer.write(HEADER);
+            writer.newLine();
+        }
+    }
+
+    private void closeWriter() throws IOException {
+        if (writer == null) return;
+        flushLocked();
+        writer.close();
+        writer = null;
+        journalStream = null;
+    }
+
+    public void startBackgroundTasks() {
+        synchronized (lock) {
+            if (background != null) return;
+            background = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "AnalyticsJournal");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        background.scheduleWithFixedDelay(() -> {
+            if (flushPolicy == FlushPolicy.INTERVAL) flush();
+        }, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+        background.scheduleWithFixedDelay(() -> {
+            if (getJournalRows() >= compactionThreshold) compact();
+        }, compactionIntervalMillis, compactionIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Folds the journal into the base file.
+     * The live journal is swapped out under the lock, so appends only wait for a rename;
+     * the merge itself runs outside the lock.
+     */
+    public void compact() {
+        synchronized (compactionLock) {
+            // Rotations merge in order, so an earlier one that failed goes first
+            if (!mergePending()) return;
+
+            File compacting;
+            long rotation;
+            synchronized (lock) {
+                try {
+                    if (journalRows == 0) return;
+                    closeWriter();
+                    rotation = nextRotation();
+                    compacting = new File(journalFile.getPath() + "." + rotation + COMPACTING_SUFFIX);
+                    Files.move(journalFile.toPath(), compacting.toPath(), StandardCopyOption.ATOMIC_MOVE);
+                    journalRows = 0;
+                } catch (IOException e) {
+                    System.err.println("Error rotating analytics journal: " + e.getMessage());
+                    return;
+                }
+            }
+
+            try {
+                compactionTarget.merge(compacting, rotation, fsync);
+                Files.deleteIfExists(compacting.toPath());
+            } catch (IOException e) {
+                System.err.println("Error compacting analytics journal: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Runs work that rewrites the compacted files. Pending rotations are merged first, and
+     * if one cannot be, the task does not run: a rewrite underneath a half-merged rotation
+     * would leave recovery nothing sound to resume from.
+     */
+    public <T> T runExclusive(ExclusiveTask<T> task) throws IOException {
+        synchronized (compactionLock) {
+            if (!mergePending()) {
+                throw new IOException("an analytics journal compaction is still pending");
+            }
+            return task.run();
+        }
+    }
+
+    // Merges or clears every rotated journal in order; false when one is left unmerged
+    private boolean mergePending() {
+        for (File compacting : pendingCompactionFiles()) {
+            long rotation = rotationOf(compacting);
+            try {
+                if (rotation > compactionTarget.lastMerged()) {
+                    compactionTarget.merge(compacting, rotation, fsync);
+                }
+                // Otherwise the merge already landed and only the cleanup was lost
+                Files.deleteIfExists(compacting.toPath());
+            } catch (IOException e) {
+                System.err.println("Error merging analytics journal rotation " + rotation + ": " + e.getMessage());
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Higher than anything handed out before, by this process or an earlier one
+    private long nextRotation() {
+        long highest = Math.max(rotationSequence, compactionTarget.lastMerged());
+        for (File file : pendingCompactionFiles()) {
+            highest = Math.max(highest, rotationOf(file));
+        }
+        rotationSequence = highest + 1;
+        return rotationSequence;
+    }
+
+    // Rotated journals in rotation order
+    private File[] pendingCompactionFiles() {
+        File dir = journalFile.getAbsoluteFile().getParentFile();
+        String prefix = journalFile.getName() + ".";
+        File[] files = dir == null ? null : dir.listFiles((d, name) ->
+            name.startsWith(prefix) && name.endsWith(COMPACTING_SUFFIX) && rotationOf(new File(d, name)) >= 0);
+        if (files == null) return new File[0];
+        Arrays.sort(files, Comparator.comparingLong(this::rotationOf));
+        return files;
+    }
+
+    private long rotationOf(File compacting) {
+        String name = compacting.getName();
+        String middle = name.substring(journalFile.getName().length() + 1,
+            name.length() - COMPACTING_SUFFIX.length());
+        try {
+            return Long.parseLong(middle);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Small state file a compaction target keeps next to its data, e.g. the last merged
+     * rotation. Replaced atomically, so a reader sees either the old or the new line.
+     */
+    static void writeState(File file, String line, boolean fsync) throws IOException {
+        Path tmp = new File(file.getPath() + ".tmp").toPath();
+        Files.write(tmp, (line + System.lineSeparator()).getBytes(StandardCharsets.UTF_8));
+        if (fsync) {
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                channel.force(true);
+            }
+        }
+        Files.move(tmp, file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // The state line split on spaces, or null when there is none
+    static String[] readState(File file) {
+        if (!file.exists()) return null;
+        try {
+            String line = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8).trim();
+            return line.isEmpty() ? null : line.split(" ");
+        } catch (IOException e) {
+            System.err.println("Error reading " + file.getName() + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    static int readRows(File file, BiConsumer<String, String[]> rowConsumer) {
+        if (!file.exists()) return 0;
+        int rows = 0;
+        try (BufferedReader reader = new BufferedReader(new FileReader(file, StandardCharsets.UTF_8))) {
+            String line = reader.readLine(); // Skip header
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.split(",");
+                if (parts.length >= 6) {
+                    rowConsumer.accept(parts[0], parts);
+                    rows++;
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Error reading analytics journal: " + e.getMessage());
+        }
+        return rows;
+    }
+
+    /**
+     * Default target: appends the journal rows to the CSV base file in place, so a merge
+     * costs the size of the journal rather than the whole history.
+     * A state file next to the base ("rotation startLength appending|merged") is written
+     * before and after each append; a retry cuts the base back to startLength first.
+     */
+    private class CsvBaseTarget implements CompactionTarget {
+        private final File baseFile;
+        private final File stateFile;
+
+        CsvBaseTarget(File baseFile) {
+            this.baseFile = baseFile;
+            this.stateFile = new File(baseFile.getPath() + ".merged");
+        }
+
+        @Override
+        public long lastMerged() {
+            String[] state = readState(stateFile);
+            if (state == null || state.length < 3) return 0;
+            long rotation = Long.parseLong(state[0]);
+            return state[2].equals("merged") ? rotation : rotation - 1;
+        }
+
+        @Override
+        public void merge(File compacting, long rotation, boolean fsync) throws IOException {
+            File dir = baseFile.getAbsoluteFile().getParentFile();
+            if (dir != null && !dir.exists()) dir.mkdirs();
+
+            String[] state = readState(stateFile);
+            if (state != null && state.length >= 3 && Long.parseLong(state[0]) == rotation && state[2].equals("appending")) {
+                // An earlier attempt at this rotation was cut short; drop whatever it appended
+                try (FileChannel channel = FileChannel.open(baseFile.toPath(), StandardOpenOption.WRITE)) {
+                    channel.truncate(Long.parseLong(state[1]));
+                }
+            }
+
+            long startLength = baseFile.exists() ? baseFile.length() : 0;
+            writeState(stateFile, rotation + " " + startLength + " appending", fsync);
+            try (FileOutputStream stream = new FileOutputStream(baseFile, true);
+                 OutputStream out = new BufferedOutputStream(stream)) {
+                if (startLength == 0) {
+                    out.write((HEADER + System.lineSeparator()).getBytes(StandardCharsets.UTF_8));
+                }
+                copyRowsWithoutHeader(compacting, out);
+                out.flush();
+                if (fsync) {
+                    stream.getChannel().force(true);
+                }
+            }
+            writeState(stateFile, rotation + " " + startLength + " merged", fsync);
+        }
+    }
+
+    private static void copyRowsWithoutHeader(File source, OutputStream out) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new FileReader(source, StandardCharsets.UTF_8))) {
+            String line = reader.readLine(); // Skip header
+            byte[] newline = System.lineSeparator().getBytes(StandardCharsets.UTF_8);
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) continue;
+                out.write(line.getBytes(StandardCharsets.UTF_8));
+                out.write(newline);
+            }
+        }
+    }
+
+    static String formatRow(String username, AnalyticsEngine.AnalyticsEntry entry) {
+        return String.format("%s,%s,%s,%s,%d,%s",
+            username,
+            entry.timestamp.format(FORMATTER),
+            entry.platform,
+            entry.metricType,
+            entry.value,
+            entry.contentId);
+    }
+
+    public void shutdown() {
+        if (background != null) {
+            background.shutdown();
+            try {
+                // Let a running compaction finish so the files are consistent on exit
+                background.awaitTermination(30, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        synchronized (lock) {
+            try {
+                closeWriter();
+            } catch (IOException e) {
+                System.err.println("Error closing analytics journal: " + e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,326 @@
+package socialmedia;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.time.Month;
+import java.time.Year;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Streaming loader for the analytics CSV log.
+ * The file is memory mapped in newline-aligned chunks that are parsed in parallel
+ * straight from the bytes; parsed chunks are handed to the sink in file order.
+ * At most threads + 1 chunks are held at once (one feeding the sink, the rest parsing),
+ * and chunks shrink with the thread count so they stay within MAX_IN_FLIGHT_BYTES.
+ */
+public class AnalyticsLogLoader {
+    private static final int CHUNK_SIZE = 64 * 1024 * 1024;
+    // Source bytes held at once; a parsed chunk takes a few times its size on the heap
+    private static final long MAX_IN_FLIGHT_BYTES = 256L * 1024 * 1024;
+
+    public interface RowSink {
+        void accept(String username, String platform, String metricType,
+                    long epochSecond, int value, String contentId);
+    }
+
+    public static class LoadSummary {
+        public final long rows;
+        public final long badRows;
+        public final long bytes;
+        public final long elapsedMillis;
+        public final int threads;
+
+        LoadSummary(long rows, long badRows, long bytes, long elapsedMillis, int threads) {
+            this.rows = rows;
+            this.badRows = badRows;
+            this.bytes = bytes;
+            this.elapsedMillis = elapsedMillis;
+            this.threads = threads;
+        }
+
+        public double rowsPerSecond() {
+            return elapsedMillis == 0 ? rows * 1000.0 : rows * 1000.0 / elapsedMillis;
+        }
+    }
+
+    private final int threads;
+
+    public AnalyticsLogLoader() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public AnalyticsLogLoader(int threads) {
+        this.threads = Math.max(1, threads);
+    }
+
+    public LoadSummary load(File file, RowSink sink) throws IOException {
+        long started = System.currentTimeMillis();
+        long rows = 0;
+        long badRows = 0;
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            List<long[]> chunks = splitOnNewlines(channel, size);
+
+            ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+                Thread t = new Thread(r, "AnalyticsLogLoader");
+                t.setDaemon(true);
+                return t;
+            });
+            try {
+                // One chunk per thread parsing ahead of the one the sink takes, so parsed data does not pile up
+                Deque<Future<ParsedChunk>> inFlight = new ArrayDeque<>();
+                int next = 0;
+                while (next < chunks.size() || !inFlight.isEmpty()) {
+                    while (next < chunks.size() && inFlight.size() < threads + 1) {
+                        long[] bounds = chunks.get(next);
+                        boolean skipHeader = next == 0;
+                        inFlight.add(pool.submit(() -> parseChunk(channel, bounds[0], bounds[1], skipHeader)));
+                        next++;
+                    }
+                    ParsedChunk chunk = inFlight.poll().get();
+                    chunk.feed(sink);
+                    rows += chunk.size;
+                    badRows += chunk.badRows;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while loading " + file, e);
+            } catch (ExecutionException e) {
+                throw new IOException("Failed to parse " + file + ": " + e.getCause().getMessage(), e.getCause());
+            } finally {
+                pool.shutdownNow();
+            }
+
+            return new LoadSummary(rows, badRows, size, System.currentTimeMillis() - started, threads);
+        }
+    }
+
+    // Chunk bounds [start, end), each ending just after a newline (or at end of file)
+    private List<long[]> splitOnNewlines(FileChannel channel, long size) throws IOException {
+        List<long[]> chunks = new ArrayList<>();
+        long maxChunk = Math.min(CHUNK_SIZE, MAX_IN_FLIGHT_BYTES / (threads + 1));
+        long chunkSize = Math.max(1024 * 1024, Math.min(maxChunk, size / threads + 1));
+        ByteBuffer probe = ByteBuffer.allocate(4096);
+
+        long start = 0;
+        while (start < size) {
+            long end = Math.min(size, start + chunkSize);
+            // Advance to the end of the line that crosses the tentative boundary
+            while (end < size) {
+                probe.clear();
+                int read = channel.read(probe, end);
+                if (read <= 0) {
+                    end = size;
+                    break;
+                }
+                int newline = -1;
+                for (int i = 0; i < read; i++) {
+                    if (probe.get(i) == '\n') {
+                        newline = i;
+                        break;
+                    }
+                }
+                if (newline >= 0) {
+                    end += newline + 1;
+                    break;
+                }
+                end += read;
+            }
+            chunks.add(new long[] {start, end});
+            start = end;
+        }
+        return chunks;
+    }
+
+    private static ParsedChunk parseChunk(FileChannel channel, long start, long end, boolean skipHeader) throws IOException {
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+        ParsedChunk chunk = new ParsedChunk();
+        StringCache shortStrings = new StringCache();
+        byte[] line = new byte[256];
+        int[] commas = new int[5];
+        boolean firstLine = skipHeader;
+
+        while (buffer.hasRemaining()) {
+            // Copy one line into the scratch buffer
+            int length = 0;
+            while (buffer.hasRemaining()) {
+                byte b = buffer.get();
+                if (b == '\n') break;
+                if (length == line.length) line = Arrays.copyOf(line, line.length * 2);
+                line[length++] = b;
+            }
+            if (length > 0 && line[length - 1] == '\r') length--;
+            if (firstLine) {
+                firstLine = false;
+                continue;
+            }
+            if (length == 0) continue;
+
+            int found = 0;
+            for (int i = 0; i < length && found < 5; i++) {
+                if (line[i] == ',') commas[found++] = i;
+            }
+            if (found < 5) continue; // same as the text loader: short rows are ignored
+
+            int contentEnd = length;
+            for (int i = commas[4] + 1; i < length; i++) {
+                if (line[i] == ',') {
+                    contentEnd = i;
+                    break;
+                }
+            }
+
+            if (contentEnd == commas[4] + 1) continue; // empty content id, also ignored by the text loader
+
+            long epochSecond = parseTimestamp(line, commas[0] + 1, commas[1]);
+            long value = parseInt(line, commas[3] + 1, commas[4]);
+            if (epochSecond == Long.MIN_VALUE || value == Long.MIN_VALUE) {
+                chunk.badRows++;
+                continue;
+            }
+
+            chunk.add(
+                shortStrings.get(line, 0, commas[0]),
+                shortStrings.get(line, commas[1] + 1, commas[2]),
+                shortStrings.get(line, commas[2] + 1, commas[3]),
+                epochSecond,
+                (int) value,
+                new String(line, commas[4] + 1, contentEnd - commas[4] - 1, StandardCharsets.UTF_8));
+        }
+        return chunk;
+    }
+
+    /**
+     * Parses the fixed "yyyy-MM-dd HH:mm" layout into epoch seconds of the wall-clock time.
+     * Returns Long.MIN_VALUE when the field does not match the layout.
+     */
+    static long parseTimestamp(byte[] bytes, int from, int to) {
+        if (to - from != 16 || bytes[from + 4] != '-' || bytes[from + 7] != '-'
+                || bytes[from + 10] != ' ' || bytes[from + 13] != ':') {
+            return Long.MIN_VALUE;
+        }
+        int year = digits(bytes, from, 4);
+        int month = digits(bytes, from + 5, 2);
+        int day = digits(bytes, from + 8, 2);
+        int hour = digits(bytes, from + 11, 2);
+        int minute = digits(bytes, from + 14, 2);
+        if (year < 0 || month < 1 || month > 12 || hour < 0 || hour > 23 || minute < 0 || minute > 59) {
+            return Long.MIN_VALUE;
+        }
+        // Impossible dates such as 02-31 are rejected, as the journal replay does
+        if (day < 1 || day > Month.of(month).length(Year.isLeap(year))) {
+            return Long.MIN_VALUE;
+        }
+        return daysFromCivil(year, month, day) * 86400L + hour * 3600L + minute * 60L;
+    }
+
+    private static int digits(byte[] bytes, int from, int count) {
+        int result = 0;
+        for (int i = from; i < from + count; i++) {
+            int digit = bytes[i] - '0';
+            if (digit < 0 || digit > 9) return -1;
+            result = result * 10 + digit;
+        }
+        return result;
+    }
+
+    // Days since 1970-01-01 in the proleptic Gregorian calendar
+    private static long daysFromCivil(int year, int month, int day) {
+        int y = month <= 2 ? year - 1 : year;
+        int era = Math.floorDiv(y, 400);
+        int yearOfEra = y - era * 400;
+        int dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097L + dayOfEra - 719468;
+    }
+
+    // Returns Long.MIN_VALUE when the field is not a valid int
+    private static long parseInt(byte[] bytes, int from, int to) {
+        if (from >= to) return Long.MIN_VALUE;
+        boolean negative = bytes[from] == '-';
+        int i = negative ? from + 1 : from;
+        if (i >= to) return Long.MIN_VALUE;
+        long result = 0;
+        for (; i < to; i++) {
+            int digit = bytes[i] - '0';
+            if (digit < 0 || digit > 9) return Long.MIN_VALUE;
+            result = result * 10 + digit;
+            if (result > Integer.MAX_VALUE + 1L) return Long.MIN_VALUE;
+        }
+        result = negative ? -result : result;
+        return result < Integer.MIN_VALUE || result > Integer.MAX_VALUE ? Long.MIN_VALUE : result;
+    }
+
+    // Parsed rows of one chunk, kept columnar until they are handed to the sink
+    private static class ParsedChunk {
+        String[] usernames = new String[1024];
+        String[] platforms = new String[1024];
+        String[] metricTypes = new String[1024];
+        long[] timestamps = new long[1024];
+        int[] values = new int[1024];
+        String[] contentIds = new String[1024];
+        int size;
+        long badRows;
+
+        void add(String username, String platform, String metricType, long epochSecond, int value, String contentId) {
+            if (size == timestamps.length) {
+                int capacity = size * 2;
+                usernames = Arrays.copyOf(usernames, capacity);
+                platforms = Arrays.copyOf(platforms, capacity);
+                metricTypes = Arrays.copyOf(metricTypes, capacity);
+                timestamps = Arrays.copyOf(timestamps, capacity);
+                values = Arrays.copyOf(values, capacity);
+                contentIds = Arrays.copyOf(contentIds, capacity);
+            }
+            usernames[size] = username;
+            platforms[size] = platform;
+            metricTypes[size] = metricType;
+            timestamps[size] = epochSecond;
+            values[size] = value;
+            contentIds[size] = contentId;
+            size++;
+        }
+
+        void feed(RowSink sink) {
+            for (int i = 0; i < size; i++) {
+                sink.accept(usernames[i], platforms[i], metricTypes[i], timestamps[i], values[i], contentIds[i]);
+            }
+        }
+    }
+
+    // Direct-mapped cache so repeated usernames/platforms/metrics share one String per chunk
+    private static class StringCache {
+        private final byte[][] keys = new byte[1024][];
+        private final String[] strings = new String[1024];
+
+        String get(byte[] bytes, int from, int to) {
+            int hash = 1;
+            for (int i = from; i < to; i++) {
+                hash = 31 * hash + bytes[i];
+            }
+            int slot = (hash ^ (hash >>> 16)) & (keys.length - 1);
+            byte[] key = keys[slot];
+            if (key != null && Arrays.equals(key, 0, key.length, bytes, from, to)) {
+                return strings[slot];
+            }
+            String value = new String(bytes, from, to - from, StandardCharsets.UTF_8).intern();
+            keys[slot] = Arrays.copyOfRange(bytes, from, to);
+            strings[slot] = value;
+            return value;
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package socialmedia;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Applies a RetentionPolicy to the compacted analytics files.
+ * The CSV base and every segment are streamed through a downsampler and replaced
+ * atomically, each only when it actually shrinks. Callers must keep journal compaction
+ * from touching the same files meanwhile (see AnalyticsJournal.runExclusive).
+ */
+public class AnalyticsRetention {
+    public static class Result {
+        public final long rowsBefore;
+        public final long rowsAfter;
+        public final int filesRewritten;
+        public final long elapsedMillis;
+
+        Result(long rowsBefore, long rowsAfter, int filesRewritten, long elapsedMillis) {
+            this.rowsBefore = rowsBefore;
+            this.rowsAfter = rowsAfter;
+            this.filesRewritten = filesRewritten;
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        public boolean changed() {
+            return filesRewritten > 0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d -> %d rows, %d files rewritten in %d ms",
+                rowsBefore, rowsAfter, filesRewritten, elapsedMillis);
+        }
+    }
+
+    private final File baseFile;
+    private final SegmentDirectory segments;
+    private volatile RetentionPolicy policy = RetentionPolicy.defaults();
+
+    public AnalyticsRetention(File baseFile, SegmentDirectory segments) {
+        this.baseFile = baseFile;
+        this.segments = segments;
+    }
+
+    public void setPolicy(RetentionPolicy policy) { this.policy = policy; }
+    public RetentionPolicy getPolicy() { return policy; }
+
+    public Result run(long now) throws IOException {
+        return run(now, policy);
+    }
+
+    // With the policy the caller also applies to its in-memory data
+    public Result run(long now, RetentionPolicy policy) throws IOException {
+        long started = System.currentTimeMillis();
+        long before = 0;
+        long after = 0;
+        int rewritten = 0;
+
+        if (baseFile.exists()) {
+            long[] counts = downsampleCsv(policy, now);
+            before += counts[0];
+            after += counts[1];
+            if (counts[1] < counts[0]) rewritten++;
+        }
+        for (File segment : segments.list()) {
+            long[] counts = downsampleSegment(segment, policy, now);
+            before += counts[0];
+            after += counts[1];
+            if (counts[1] < counts[0]) rewritten++;
+        }
+        return new Result(before, after, rewritten, System.currentTimeMillis() - started);
+    }
+
+    private long[] downsampleCsv(RetentionPolicy policy, long now) throws IOException {
+        File tmp = new File(baseFile.getPath() + ".retention");
+        Downsampler downsampler;
+        try {
+            downsampler = writeDownsampledCsv(tmp, policy, now);
+        } catch (IOException | UncheckedIOException e) {
+            Files.deleteIfExists(tmp.toPath());
+            throw e instanceof UncheckedIOException ? ((UncheckedIOException) e).getCause() : (IOException) e;
+        }
+
+        if (downsampler.rowsOut < downsampler.rowsIn) {
+            Files.move(tmp.toPath(), baseFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } else {
+            Files.deleteIfExists(tmp.toPath());
+        }
+        return new long[] {downsampler.rowsIn, downsampler.rowsOut};
+    }
+
+    private Downsampler writeDownsampledCsv(File tmp, RetentionPolicy policy, long now) throws IOException {
+        try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(tmp), StandardCharsets.UTF_8), 1 << 16)) {
+            writer.write(AnalyticsJournal.HEADER);
+            writer.newLine();
+            AnalyticsLogLoader.RowSink out = (username, platform, metricType, epochSecond, value, contentId) -> {
+                try {
+                    writer.write(AnalyticsJournal.formatRow(username, new AnalyticsEngine.AnalyticsEntry(
+                        MetricSeries.toLocalDateTime(epochSecond), platform, metricType, value, contentId)));
+                    writer.newLine();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            };
+            // Recent rows stream straight through; bucketed rows are written once the scan is done
+            Downsampler downsampler = new Downsampler(policy, now, out);
+            new AnalyticsLogLoader().load(baseFile, downsampler);
+            downsampler.flush(out);
+            return downsampler;
+        }
+    }
+
+    private long[] downsampleSegment(File segment, RetentionPolicy policy, long now) throws IOException {
+        AnalyticsSegment.Builder builder = new AnalyticsSegment.Builder();
+        Downsampler downsampler = new Downsampler(policy, now, builder::add);
+        AnalyticsSegment.read(segment, downsampler);
+        downsampler.flush(builder::add);
+        if (downsampler.rowsOut < downsampler.rowsIn) {
+            builder.writeTo(segment); // temp file + atomic rename
+        }
+        return new long[] {downsampler.rowsIn, downsampler.rowsOut};
+    }
+
+    // Passes raw-period rows through and keeps the last sample of every older bucket
+    private static class Downsampler implements AnalyticsLogLoader.RowSink {
+        private final RetentionPolicy policy;
+        private final long now;
+        private final AnalyticsLogLoader.RowSink rawOut;
+        private final Map<String, Sample> buckets = new LinkedHashMap<>();
+        long rowsIn;
+        long rowsOut;
+
+        Downsampler(RetentionPolicy policy, long now, AnalyticsLogLoader.RowSink rawOut) {
+            this.policy = policy;
+            this.now = now;
+            this.rawOut = rawOut;
+        }
+
+        @Override
+        public void accept(String username, String platform, String metricType,
+                           long epochSecond, int value, String contentId) {
+            rowsIn++;
+            if (policy.isRaw(epochSecond, now)) {
+                rawOut.accept(username, platform, metricType, epochSecond, value, contentId);
+                rowsOut++;
+                return;
+            }
+            String key = username + '\u0000' + platform + '\u0000' + metricType + '\u0000'
+                + policy.bucketOf(epochSecond, now);
+            Sample sample = buckets.get(key);
+            if (sample == null) {
+                buckets.put(key, new Sample(username, platform, metricType, epochSecond, value, contentId));
+            } else if (epochSecond >= sample.epochSecond) {
+                // Later arrival wins a tie, as it would be the last point in time order
+                sample.epochSecond = epochSecond;
+                sample.value = value;
+                sample.contentId = contentId;
+            }
+        }
+
+        void flush(AnalyticsLogLoader.RowSink out) {
+            for (Sample sample : buckets.values()) {
+                out.accept(sample.username, sample.platform, sample.metricType,
+                    sample.epochSecond, sample.value, sample.contentId);
+            }
+            rowsOut += buckets.size();
+            buckets.clear();
+        }
+    }
+
+    private static class Sample {
+        final String username;
+        final String platform;
+        final String metricType;
+        long epochSecond;
+        int value;
+        String contentId;
+
+        Sample(String username, String platform, String metricType, long epochSecond, int value, String contentId) {
+            this.username = username;
+            this.platform = platform;
+            this.metricType = metricType;
+            this.epochSecond = epochSecond;
+            this.value = value;
+            this.contentId = contentId;
+        }
+    }
+}
@@ -0,0 +1,384 @@
+package socialmedia;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable binary segment file for analytics rows.
+ *
+ * Layout: header (magic, version), string dictionary, one block per series
+ * (delta-encoded timestamps, zigzag varint values, varint content id codes),
+ * then a footer index of series blocks and a fixed trailer pointing at the footer.
+ * All strings (users, platforms, metrics, content ids) live in the dictionary.
+ */
+public class AnalyticsSegment {
+    public static final String EXTENSION = ".seg";
+    private static final int MAGIC = 0x534D4153;          // "SMAS"
+    private static final int FOOTER_MAGIC = 0x534D4146;   // "SMAF"
+    private static final int VERSION = 1;
+    private static final int TRAILER_BYTES = 12;
+
+    // One footer entry: where a series block starts and what it covers
+    public static class SeriesIndex {
+        public final String username;
+        public final String platform;
+        public final String metricType;
+        public final long offset;
+        public final int pointCount;
+        public final long minTimestamp;
+        public final long maxTimestamp;
+
+        SeriesIndex(String username, String platform, String metricType, long offset,
+                    int pointCount, long minTimestamp, long maxTimestamp) {
+            this.username = username;
+            this.platform = platform;
+            this.metricType = metricType;
+            this.offset = offset;
+            this.pointCount = pointCount;
+            this.minTimestamp = minTimestamp;
+            this.maxTimestamp = maxTimestamp;
+        }
+    }
+
+    /**
+     * Collects rows and writes them as one segment.
+     * Rows are grouped per series and sorted by time (arrival order among equal timestamps).
+     */
+    public static class Builder {
+        private final StringDictionary dictionary = new StringDictionary();
+        private final Map<String, SeriesBuffer> series = new LinkedHashMap<>();
+        private long rowCount;
+
+        public void add(String username, String platform, String metricType,
+                        long epochSecond, int value, String contentId) {
+            String key = username + '\u0000' + platform + '\u0000' + metricType;
+            SeriesBuffer buffer = series.get(key);
+            if (buffer == null) {
+                buffer = new SeriesBuffer(dictionary.encode(username), dictionary.encode(platform),
+                    dictionary.encode(metricType));
+                series.put(key, buffer);
+            }
+            buffer.add(epochSecond, value, dictionary.encode(contentId));
+            rowCount++;
+        }
+
+        public long getRowCount() {
+            return rowCount;
+        }
+
+        public boolean isEmpty() {
+            return rowCount == 0;
+        }
+
+        // Writes to a temporary file first so readers never see a half-written segment
+        public void writeTo(File file) throws IOException {
+            writeTo(file, false);
+        }
+
+        // With fsync the data is on disk before the rename makes the segment visible
+        public void writeTo(File file, boolean fsync) throws IOException {
+            File dir = file.getAbsoluteFile().getParentFile();
+            if (dir != null && !dir.exists()) dir.mkdirs();
+
+            File tmp = new File(file.getPath() + ".tmp");
+            try (FileOutputStream stream = new FileOutputStream(tmp);
+                 CountingOutputStream counter = new CountingOutputStream(new BufferedOutputStream(stream, 1 << 16));
+                 DataOutputStream out = new DataOutputStream(counter)) {
+                out.writeInt(MAGIC);
+                out.writeByte(VERSION);
+
+                writeVarLong(out, dictionary.size());
+                for (int i = 0; i < dictionary.size(); i++) {
+                    byte[] bytes = dictionary.decode(i).getBytes(StandardCharsets.UTF_8);
+                    writeVarLong(out, bytes.length);
+                    out.write(bytes);
+                }
+
+                List<long[]> index = new ArrayList<>();
+                for (SeriesBuffer buffer : series.values()) {
+                    long offset = counter.count;
+                    int[] order = buffer.sortedOrder();
+                    writeVarLong(out, buffer.userCode);
+                    writeVarLong(out, buffer.platformCode);
+                    writeVarLong(out, buffer.metricCode);
+                    writeVarLong(out, buffer.size);
+                    long previous = 0;
+                    for (int i : order) {
+                        writeVarLong(out, zigzag(buffer.timestamps[i] - previous));
+                        previous = buffer.timestamps[i];
+                    }
+                    for (int i : order) {
+                        writeVarLong(out, zigzag(buffer.values[i]));
+                    }
+                    for (int i : order) {
+                        writeVarLong(out, buffer.contentIds[i]);
+                    }
+                    index.add(new long[] {buffer.userCode, buffer.platformCode, buffer.metricCode, offset,
+                        buffer.size, buffer.timestamps[order[0]], buffer.timestamps[order[order.length - 1]]});
+                }
+
+                long footerOffset = counter.count;
+                writeVarLong(out, index.size());
+                for (long[] entry : index) {
+                    writeVarLong(out, entry[0]);
+                    writeVarLong(out, entry[1]);
+                    writeVarLong(out, entry[2]);
+                    writeVarLong(out, entry[3]);
+                    writeVarLong(out, entry[4]);
+                    writeVarLong(out, zigzag(entry[5]));
+                    writeVarLong(out, zigzag(entry[6]));
+                }
+                out.writeLong(footerOffset);
+                out.writeInt(FOOTER_MAGIC);
+                out.flush();
+                if (fsync) {
+                    stream.getChannel().force(true);
+                }
+            }
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+
+    private static class SeriesBuffer {
+        final int userCode;
+        final int platformCode;
+        final int metricCode;
+        long[] timestamps = new long[16];
+        int[] values = new int[16];
+        int[] contentIds = new int[16];
+        int size;
+
+        SeriesBuffer(int userCode, int platformCode, int metricCode) {
+            this.userCode = userCode;
+            this.platformCode = platformCode;
+            this.metricCode = metricCode;
+        }
+
+        void add(long epochSecond, int value, int contentId) {
+            if (size == timestamps.length) {
+                timestamps = Arrays.copyOf(timestamps, size * 2);
+                values = Arrays.copyOf(values, size * 2);
+                contentIds = Arrays.copyOf(contentIds, size * 2);
+            }
+            timestamps[size] = epochSecond;
+            values[size] = value;
+            contentIds[size] = contentId;
+            size++;
+        }
+
+        int[] sortedOrder() {
+            int[] order = new int[size];
+            boolean sorted = true;
+            for (int i = 0; i < size; i++) {
+                order[i] = i;
+                if (i > 0 && timestamps[i] < timestamps[i - 1]) sorted = false;
+            }
+            if (sorted) return order;
+
+            // Stable sort keeps arrival order for equal timestamps
+            Integer[] boxed = new Integer[size];
+            for (int i = 0; i < size; i++) {
+                boxed[i] = i;
+            }
+            Arrays.sort(boxed, (a, b) -> Long.compare(timestamps[a], timestamps[b]));
+            for (int i = 0; i < size; i++) {
+                order[i] = boxed[i];
+            }
+            return order;
+        }
+    }
+
+    /**
+     * Streams every row of a segment to the sink, series by series.
+     * Returns the number of rows read.
+     */
+    public static long read(File file, AnalyticsLogLoader.RowSink sink) throws IOException {
+        long footerOffset = readTrailer(file);
+        try (CountingInputStream counter = new CountingInputStream(
+                new BufferedInputStream(new FileInputStream(file), 1 << 16));
+             DataInputStream in = new DataInputStream(counter)) {
+            String[] dictionary = readHeader(in, file);
+            long rows = 0;
+            while (counter.count < footerOffset) {
+                rows += readBlock(in, dictionary, sink);
+            }
+            return rows;
+        }
+    }
+
+    // Reads only the footer index, without touching the series blocks
+    public static List<SeriesIndex> readIndex(File file) throws IOException {
+        String[] dictionary = readDictionary(file);
+        long footerOffset = readTrailer(file);
+
+        List<SeriesIndex> index = new ArrayList<>();
+        try (DataInputStream in = openAt(file, footerOffset)) {
+            int count = (int) readVarLong(in);
+            for (int i = 0; i < count; i++) {
+                String username = dictionary[(int) readVarLong(in)];
+                String platform = dictionary[(int) readVarLong(in)];
+                String metricType = dictionary[(int) readVarLong(in)];
+                long offset = readVarLong(in);
+                int pointCount = (int) readVarLong(in);
+                long minTimestamp = unzigzag(readVarLong(in));
+                long maxTimestamp = unzigzag(readVarLong(in));
+                index.add(new SeriesIndex(username, platform, metricType, offset, pointCount, minTimestamp, maxTimestamp));
+            }
+        }
+        return index;
+    }
+
+    // Reads a single series block located through the footer index
+    public static long readSeries(File file, SeriesIndex series, AnalyticsLogLoader.RowSink sink) throws IOException {
+        String[] dictionary = readDictionary(file);
+        try (DataInputStream in = openAt(file, series.offset)) {
+            return readBlock(in, dictionary, sink);
+        }
+    }
+
+    private static String[] readDictionary(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            return readHeader(in, file);
+        }
+    }
+
+    private static DataInputStream openAt(File file, long offset) throws IOException {
+        FileInputStream stream = new FileInputStream(file);
+        try {
+            stream.getChannel().position(offset);
+        } catch (IOException e) {
+            stream.close();
+            throw e;
+        }
+        return new DataInputStream(new BufferedInputStream(stream));
+    }
+
+    private static String[] readHeader(DataInputStream in, File file) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not an analytics segment: " + file);
+        }
+        int version = in.readUnsignedByte();
+        if (version != VERSION) {
+            throw new IOException("Unsupported analytics segment version " + version + ": " + file);
+        }
+        int size = (int) readVarLong(in);
+        String[] dictionary = new String[size];
+        for (int i = 0; i < size; i++) {
+            byte[] bytes = new byte[(int) readVarLong(in)];
+            in.readFully(bytes);
+            dictionary[i] = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return dictionary;
+    }
+
+    private static long readTrailer(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            if (raf.length() < TRAILER_BYTES) {
+                throw new IOException("Truncated analytics segment: " + file);
+            }
+            raf.seek(raf.length() - TRAILER_BYTES);
+            long footerOffset = raf.readLong();
+            if (raf.readInt() != FOOTER_MAGIC) {
+                throw new IOException("Corrupt analytics segment footer: " + file);
+            }
+            return footerOffset;
+        }
+    }
+
+    private static long readBlock(DataInputStream in, String[] dictionary, AnalyticsLogLoader.RowSink sink) throws IOException {
+        String username = dictionary[(int) readVarLong(in)];
+        String platform = dictionary[(int) readVarLong(in)];
+        String metricType = dictionary[(int) readVarLong(in)];
+        int count = (int) readVarLong(in);
+
+        long[] timestamps = new long[count];
+        long previous = 0;
+        for (int i = 0; i < count; i++) {
+            previous += unzigzag(readVarLong(in));
+            timestamps[i] = previous;
+        }
+        int[] values = new int[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = (int) unzigzag(readVarLong(in));
+        }
+        for (int i = 0; i < count; i++) {
+            sink.accept(username, platform, metricType, timestamps[i], values[i], dictionary[(int) readVarLong(in)]);
+        }
+        return count;
+    }
+
+    static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    static void writeVarLong(DataOutput out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    static long readVarLong(DataInput in) throws IOException {
+        long result = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            result |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return result;
+        }
+        throw new IOException("Malformed varint in analytics segment");
+    }
+
+    private static class CountingOutputStream extends FilterOutputStream {
+        long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+
+    private static class CountingInputStream extends FilterInputStream {
+        long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = in.read();
+            if (b >= 0) count++;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = in.read(b, off, len);
+            if (read > 0) count += read;
+            return read;
+        }
+    }
+}
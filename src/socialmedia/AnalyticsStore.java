@@ -0,0 +1,92 @@
+package socialmedia;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * In-memory analytics data, organised as user -> platform -> metric -> MetricSeries.
+ * Content ids are dictionary encoded once for the whole store.
+ */
+public class AnalyticsStore {
+    private final Map<String, Map<String, Map<String, MetricSeries>>> series = new HashMap<>();
+    private final StringDictionary contentIds = new StringDictionary();
+    private long totalPoints;
+    
+    public MetricSeries add(String username, String platform, String metricType,
+                            long epochSecond, int value, String contentId) {
+        MetricSeries metricSeries = getOrCreateSeries(username, platform, metricType);
+        metricSeries.add(epochSecond, value, contentIds.encode(contentId));
+        totalPoints++;
+        return metricSeries;
+    }
+    
+    public MetricSeries getOrCreateSeries(String username, String platform, String metricType) {
+        return series
+            .computeIfAbsent(username, k -> new LinkedHashMap<>())
+            .computeIfAbsent(platform, k -> new LinkedHashMap<>())
+            .computeIfAbsent(metricType, k -> new MetricSeries());
+    }
+    
+    public MetricSeries getSeries(String username, String platform, String metricType) {
+        Map<String, MetricSeries> metrics = getUserSeries(username).get(platform);
+        return metrics == null ? null : metrics.get(metricType);
+    }
+    
+    // platform -> metric -> series for one user, empty when the user has no data
+    public Map<String, Map<String, MetricSeries>> getUserSeries(String username) {
+        Map<String, Map<String, MetricSeries>> userSeries = series.get(username);
+        return userSeries == null ? Collections.emptyMap() : userSeries;
+    }
+    
+    public boolean hasData(String username) {
+        return series.containsKey(username);
+    }
+    
+    public Set<String> usernames() {
+        return series.keySet();
+    }
+    
+    /**
+     * Swaps in the raw points of a downsampled copy of this store (see AnalyticsRetention).
+     * Rollups and sketches are left to applyRetention.
+     */
+    public void replacePoints(AnalyticsStore thinned) {
+        int[] recoded = new int[thinned.contentIds.size()];
+        for (int code = 0; code < recoded.length; code++) {
+            recoded[code] = contentIds.encode(thinned.contentIds.decode(code));
+        }
+        for (Map.Entry<String, Map<String, Map<String, MetricSeries>>> userEntry : thinned.series.entrySet()) {
+            for (Map.Entry<String, Map<String, MetricSeries>> platformEntry : userEntry.getValue().entrySet()) {
+                for (Map.Entry<String, MetricSeries> metricEntry : platformEntry.getValue().entrySet()) {
+                    getOrCreateSeries(userEntry.getKey(), platformEntry.getKey(), metricEntry.getKey())
+                        .replacePoints(metricEntry.getValue(), code -> recoded[code]);
+                }
+            }
+        }
+        totalPoints = thinned.totalPoints;
+    }
+    
+    // Applies the policy to every series' rollups and sketches; returns the number of series changed
+    public int applyRetention(RetentionPolicy policy, long now) {
+        int changed = 0;
+        for (Map<String, Map<String, MetricSeries>> platforms : series.values()) {
+            for (Map<String, MetricSeries> metrics : platforms.values()) {
+                for (MetricSeries metricSeries : metrics.values()) {
+                    if (metricSeries.applyRetention(policy, now)) changed++;
+                }
+            }
+        }
+        return changed;
+    }
+    
+    public String decodeContentId(int code) {
+        return contentIds.decode(code);
+    }
+    
+    public long getTotalPoints() {
+        return totalPoints;
+    }
+}
@@ -0,0 +1,244 @@
+package socialmedia;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Append-only CSV activity log written by a background thread.
+ * Callers only enqueue a record into a bounded ring buffer; the writer formats records
+ * in batches and appends them through a file channel it keeps open. The file is rotated
+ * once it passes a size limit or a time bucket boundary, and shutdown() writes out
+ * everything still queued. A caller only waits when the buffer is full.
+ */
+public class AsyncActivityLog<T> {
+    public static final int DEFAULT_CAPACITY = 8192;
+    public static final long DEFAULT_MAX_BYTES = 16L << 20;
+    public static final long DEFAULT_ROTATE_MILLIS = 86_400_000; // UTC days
+    private static final int MAX_BATCH = 1024;
+    private static final DateTimeFormatter ROTATED_SUFFIX = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss-SSS");
+    private static final Object STOP = new Object();
+
+    private final File logFile;
+    private final String header;
+    private final Function<T, String> formatter;
+    private final BlockingQueue<Object> buffer;
+    private final Thread writerThread;
+    private final Object progress = new Object();
+    private final AtomicLong enqueued = new AtomicLong();
+    private final AtomicLong stalls = new AtomicLong();
+
+    private volatile long maxBytes = DEFAULT_MAX_BYTES;
+    private volatile long rotateMillis = DEFAULT_ROTATE_MILLIS;
+
+    private FileChannel channel;
+    private long fileBytes;
+    private long fileBucket;
+    private long written; // guarded by progress
+    private volatile boolean stopped;
+
+    public AsyncActivityLog(File logFile, String header, Function<T, String> formatter) {
+        this(logFile, header, formatter, DEFAULT_CAPACITY);
+    }
+
+    public AsyncActivityLog(File logFile, String header, Function<T, String> formatter, int capacity) {
+        this.logFile = logFile;
+        this.header = header;
+        this.formatter = formatter;
+        this.buffer = new ArrayBlockingQueue<>(Math.max(16, capacity));
+        this.writerThread = new Thread(this::writeLoop, "ActivityLog-" + logFile.getName());
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    public void setMaxBytes(long maxBytes) { this.maxBytes = Math.max(1024, maxBytes); }
+    public void setRotateMillis(long rotateMillis) { this.rotateMillis = Math.max(1000, rotateMillis); }
+
+    public void log(T record) {
+        if (stopped) {
+            System.err.println("Activity log is shut down; dropping record");
+            return;
+        }
+        enqueued.incrementAndGet();
+        if (!buffer.offer(record)) {
+            // The writer is a full buffer behind; wait rather than drop the record
+            stalls.incrementAndGet();
+            try {
+                buffer.put(record);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                enqueued.decrementAndGet();
+            }
+        }
+    }
+
+    public int getQueueDepth() { return buffer.size(); }
+    public long getStalls() { return stalls.get(); }
+
+    public long getWritten() {
+        synchronized (progress) {
+            return written;
+        }
+    }
+
+    /** Waits until every record logged before the call has been handed to the file. */
+    public boolean awaitWritten(long timeoutMillis) {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        long target = enqueued.get();
+        synchronized (progress) {
+            long remaining;
+            while (written < target) {
+                if ((remaining = deadline - System.currentTimeMillis()) <= 0) return false;
+                try {
+                    progress.wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void writeLoop() {
+        List<Object> batch = new ArrayList<>(MAX_BATCH);
+        boolean stopping = false;
+        while (!stopping) {
+            try {
+                batch.add(buffer.take());
+            } catch (InterruptedException e) {
+                // Only shutdown() interrupts; what is still buffered gets written below
+                stopping = true;
+            }
+            buffer.drainTo(batch, MAX_BATCH - batch.size());
+
+            StringBuilder lines = new StringBuilder();
+            int records = 0;
+            for (Object item : batch) {
+                if (item == STOP) {
+                    stopping = true;
+                    continue;
+                }
+                lines.append(formatter.apply((T) item)).append(System.lineSeparator());
+                records++;
+            }
+            batch.clear();
+            if (stopping) {
+                // Records that raced in ahead of the stop marker
+                List<Object> rest = new ArrayList<>();
+                buffer.drainTo(rest);
+                for (Object item : rest) {
+                    if (item == STOP) continue;
+                    lines.append(formatter.apply((T) item)).append(System.lineSeparator());
+                    records++;
+                }
+            }
+            if (records > 0) write(lines);
+
+            synchronized (progress) {
+                written += records;
+                progress.notifyAll();
+            }
+        }
+        closeChannel();
+    }
+
+    private void write(StringBuilder lines) {
+        byte[] bytes = lines.toString().getBytes(StandardCharsets.UTF_8);
+        try {
+            rotateIfNeeded(bytes.length);
+            ensureOpen();
+            ByteBuffer data = ByteBuffer.wrap(bytes);
+            while (data.hasRemaining()) {
+                channel.write(data);
+            }
+            fileBytes += bytes.length;
+        } catch (IOException e) {
+            System.err.println("Error writing " + logFile.getName() + ": " + e.getMessage());
+            // Reopen on the next batch in case the file went away
+            closeChannel();
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (channel != null) return;
+        File dir = logFile.getAbsoluteFile().getParentFile();
+        if (dir != null && !dir.exists()) dir.mkdirs();
+
+        boolean isNewFile = !logFile.exists() || logFile.length() == 0;
+        channel = FileChannel.open(logFile.toPath(),
+            StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        fileBytes = channel.size();
+        // An existing file belongs to the bucket it was last written in, so restarts still rotate
+        fileBucket = bucketOf(isNewFile ? System.currentTimeMillis() : logFile.lastModified());
+        if (isNewFile) {
+            ByteBuffer data = ByteBuffer.wrap((header + System.lineSeparator()).getBytes(StandardCharsets.UTF_8));
+            while (data.hasRemaining()) {
+                channel.write(data);
+            }
+            fileBytes = channel.size();
+        }
+    }
+
+    private void rotateIfNeeded(int incoming) throws IOException {
+        if (channel == null) {
+            if (!logFile.exists() || logFile.length() == 0) return;
+            ensureOpen();
+        }
+        boolean full = fileBytes + incoming > maxBytes && fileBytes > header.length() + 2;
+        if (!full && bucketOf(System.currentTimeMillis()) == fileBucket) return;
+
+        closeChannel();
+        String name = logFile.getName();
+        int dot = name.lastIndexOf('.');
+        String stem = dot > 0 ? name.substring(0, dot) : name;
+        String extension = dot > 0 ? name.substring(dot) : "";
+        String suffix = LocalDateTime.now().format(ROTATED_SUFFIX);
+        File rotated = new File(logFile.getAbsoluteFile().getParentFile(), stem + "." + suffix + extension);
+        for (int i = 1; rotated.exists(); i++) {
+            rotated = new File(logFile.getAbsoluteFile().getParentFile(), stem + "." + suffix + "-" + i + extension);
+        }
+        Files.move(logFile.toPath(), rotated.toPath(), StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private long bucketOf(long epochMillis) {
+        return Math.floorDiv(epochMillis, rotateMillis);
+    }
+
+    private void closeChannel() {
+        if (channel == null) return;
+        try {
+            channel.close();
+        } catch (IOException e) {
+            System.err.println("Error closing " + logFile.getName() + ": " + e.getMessage());
+        }
+        channel = null;
+    }
+
+    // Writes out everything queued so far, then stops the writer
+    public void shutdown() {
+        if (stopped) return;
+        stopped = true;
+        try {
+            buffer.put(STOP);
+            writerThread.join(30000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            writerThread.interrupt();
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package socialmedia;
+
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Feeds overdue posts to the scheduler after a restart, oldest first, with at most
+ * {@code parallelism} of them released at a time. A post is handed to the due queue
+ * (so rate limits still apply) and the next one follows when it is published, fails,
+ * is cancelled or goes back to wait out a retry backoff; a post waiting to retry does
+ * not hold a slot. Progress goes to the given sink every 5% and at the end.
+ */
+public class CatchUp {
+    static final String CSV_HEADER = "Timestamp,Total,Published,Failed,Dropped,Skipped,InFlight,ElapsedMs,Retrying";
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    public static class Progress {
+        public final LocalDateTime timestamp;
+        public final int total;      // overdue posts the policy kept
+        public final int published;
+        public final int failed;
+        public final int dropped;    // cancelled or published elsewhere before their turn
+        public final int skipped;    // dropped up front by the policy
+        public final int inFlight;
+        public final int retrying;   // failed once, waiting out the backoff outside the slots
+        public final long elapsedMillis;
+
+        Progress(LocalDateTime timestamp, int total, int published, int failed, int dropped, int skipped,
+                 int inFlight, int retrying, long elapsedMillis) {
+            this.timestamp = timestamp;
+            this.total = total;
+            this.published = published;
+            this.failed = failed;
+            this.dropped = dropped;
+            this.skipped = skipped;
+            this.inFlight = inFlight;
+            this.retrying = retrying;
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        public boolean isDone() {
+            return published + failed + dropped >= total;
+        }
+
+        String toCsv() {
+            return String.format("%s,%d,%d,%d,%d,%d,%d,%d,%d", timestamp.format(TIMESTAMP),
+                total, published, failed, dropped, skipped, inFlight, elapsedMillis, retrying);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d/%d published, %d failed, %d dropped, %d skipped by policy (%d ms)",
+                published, total, failed, dropped, skipped, elapsedMillis);
+        }
+    }
+
+    private final Deque<ScheduledPost> waiting;
+    private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+    private final Set<String> retrying = ConcurrentHashMap.newKeySet();
+    private final int parallelism;
+    private final int total;
+    private final int skipped;
+    private final Consumer<ScheduledPost> release;
+    private final Consumer<Progress> progressSink;
+    private final Clock clock;
+    private final long started;
+    private int published;
+    private int failed;
+    private int dropped;
+    private int lastReportedStep = -1;
+
+    CatchUp(List<ScheduledPost> dueOrder, int skipped, int parallelism, Clock clock,
+            Consumer<ScheduledPost> release, Consumer<Progress> progressSink) {
+        this.waiting = new ArrayDeque<>(dueOrder);
+        this.total = dueOrder.size();
+        this.skipped = skipped;
+        this.parallelism = Math.max(1, parallelism);
+        this.release = release;
+        this.progressSink = progressSink;
+        this.clock = clock;
+        this.started = clock.millis();
+    }
+
+    void start() {
+        fill();
+        report();
+    }
+
+    void published(ScheduledPost post) {
+        if (!settle(post)) return;
+        synchronized (this) {
+            published++;
+        }
+        advance();
+    }
+
+    void failed(ScheduledPost post) {
+        if (!settle(post)) return;
+        synchronized (this) {
+            failed++;
+        }
+        advance();
+    }
+
+    // Cancelled while released; waiting posts that were cancelled are dropped by fill()
+    void dropped(ScheduledPost post) {
+        if (!settle(post)) return;
+        synchronized (this) {
+            dropped++;
+        }
+        advance();
+    }
+
+    // Failed and queued again after a backoff: its slot goes to the next post meanwhile
+    void retrying(ScheduledPost post) {
+        if (!inFlight.remove(post.getPostId())) return;
+        retrying.add(post.getPostId());
+        advance();
+    }
+
+    // True if the post was released by this catch-up and had not settled yet
+    private boolean settle(ScheduledPost post) {
+        return inFlight.remove(post.getPostId()) | retrying.remove(post.getPostId());
+    }
+
+    private void advance() {
+        fill();
+        report();
+    }
+
+    private void fill() {
+        while (true) {
+            ScheduledPost next;
+            synchronized (this) {
+                if (inFlight.size() >= parallelism || waiting.isEmpty()) return;
+                next = waiting.poll();
+                if (next.isCancelled() || next.isPosted()) {
+                    dropped++;
+                    continue;
+                }
+                inFlight.add(next.getPostId());
+            }
+            // Outside the lock: the post may be published and call back before add() returns
+            release.accept(next);
+        }
+    }
+
+    public synchronized Progress progress() {
+        return new Progress(LocalDateTime.now(clock), total, published, failed, dropped, skipped,
+            inFlight.size(), retrying.size(), clock.millis() - started);
+    }
+
+    public boolean isDone() {
+        return progress().isDone();
+    }
+
+    private void report() {
+        Progress progress;
+        synchronized (this) {
+            progress = progress();
+            int step = total == 0 ? 20 : (published + failed + dropped) * 20 / total;
+            if (step == lastReportedStep) return;
+            lastReportedStep = step;
+        }
+        progressSink.accept(progress);
+    }
+}
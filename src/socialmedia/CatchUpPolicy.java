@@ -0,0 +1,97 @@
+package socialmedia;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * What PostScheduler does at start-up with posts that fell due while it was not running.
+ * Overdue posts are always handled oldest first and at most {@code parallelism} at a time;
+ * the policy decides which of them are still worth publishing:
+ * <ul>
+ *   <li>publishAll() - every overdue post goes out</li>
+ *   <li>skipOlderThan(age) - posts overdue by more than age are dropped</li>
+ *   <li>collapseDuplicates() - of several overdue posts with the same author, platform
+ *       and content only the latest one goes out</li>
+ * </ul>
+ */
+public class CatchUpPolicy {
+    public static final int DEFAULT_PARALLELISM = 16;
+
+    private final Duration maxAge;          // null keeps every overdue post
+    private final boolean collapseDuplicates;
+    private final int parallelism;
+
+    public CatchUpPolicy(Duration maxAge, boolean collapseDuplicates, int parallelism) {
+        this.maxAge = maxAge;
+        this.collapseDuplicates = collapseDuplicates;
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    public static CatchUpPolicy publishAll() {
+        return new CatchUpPolicy(null, false, DEFAULT_PARALLELISM);
+    }
+
+    public static CatchUpPolicy skipOlderThan(Duration maxAge) {
+        return new CatchUpPolicy(maxAge, false, DEFAULT_PARALLELISM);
+    }
+
+    public static CatchUpPolicy collapseDuplicates() {
+        return new CatchUpPolicy(null, true, DEFAULT_PARALLELISM);
+    }
+
+    public Duration getMaxAge() { return maxAge; }
+    public boolean isCollapseDuplicates() { return collapseDuplicates; }
+    public int getParallelism() { return parallelism; }
+
+    public static class Plan {
+        public final List<ScheduledPost> publish = new ArrayList<>(); // due order
+        public final List<ScheduledPost> tooOld = new ArrayList<>();
+        public final List<ScheduledPost> duplicates = new ArrayList<>();
+    }
+
+    // Sorts the overdue posts by due time and sorts out the ones the policy drops
+    public Plan plan(List<ScheduledPost> overdue, long nowMillis) {
+        List<ScheduledPost> sorted = new ArrayList<>(overdue);
+        sorted.sort(Comparator.comparingLong(ScheduledPost::getDueEpochMillis));
+
+        Plan plan = new Plan();
+        List<ScheduledPost> fresh = new ArrayList<>(sorted.size());
+        for (ScheduledPost post : sorted) {
+            if (maxAge != null && nowMillis - post.getDueEpochMillis() > maxAge.toMillis()) {
+                plan.tooOld.add(post);
+            } else {
+                fresh.add(post);
+            }
+        }
+        if (!collapseDuplicates) {
+            plan.publish.addAll(fresh);
+            return plan;
+        }
+
+        // Walking in due order, a later duplicate replaces the one kept so far
+        Map<String, Integer> latest = new HashMap<>();
+        for (int i = 0; i < fresh.size(); i++) {
+            ScheduledPost post = fresh.get(i);
+            latest.put(post.getAuthor() + '\n' + post.getPlatform() + '\n' + post.getContent(), i);
+        }
+        for (int i = 0; i < fresh.size(); i++) {
+            ScheduledPost post = fresh.get(i);
+            Integer keep = latest.get(post.getAuthor() + '\n' + post.getPlatform() + '\n' + post.getContent());
+            (keep == i ? plan.publish : plan.duplicates).add(post);
+        }
+        return plan;
+    }
+
+    @Override
+    public String toString() {
+        if (maxAge == null && !collapseDuplicates) return "publish all, " + parallelism + " at a time";
+        List<String> parts = new ArrayList<>();
+        if (maxAge != null) parts.add("skip older than " + maxAge.toMinutes() + " min");
+        if (collapseDuplicates) parts.add("collapse duplicates");
+        return String.join(", ", parts) + ", " + parallelism + " at a time";
+    }
+}
@@ -0,0 +1,155 @@
+package socialmedia;
+
+/**
+ * Distinct-count sketch.
+ * Small sets live in a sparse hash table of (register, rank) pairs and switch to the
+ * dense register array once that would be larger, so a sketch over a handful of
+ * content ids costs a few dozen bytes and a large one never exceeds 2^precision bytes.
+ * Sketches with the same precision merge by taking the register-wise maximum.
+ */
+public class HyperLogLog {
+    public static final int DEFAULT_PRECISION = 11; // 2048 registers, about 2.3% standard error
+
+    private final int precision;
+    private final int registerCount;
+    private byte[] registers;   // dense form, null while sparse
+    private int[] sparse;       // open addressing, entry = (register + 1) << 8 | rank, 0 = empty
+    private int sparseSize;
+
+    public HyperLogLog() {
+        this(DEFAULT_PRECISION);
+    }
+
+    public HyperLogLog(int precision) {
+        if (precision < 4 || precision > 16) {
+            throw new IllegalArgumentException("precision must be between 4 and 16: " + precision);
+        }
+        this.precision = precision;
+        this.registerCount = 1 << precision;
+        this.sparse = new int[8];
+    }
+
+    public void add(long hash) {
+        int register = (int) (hash >>> (64 - precision));
+        // A guard bit keeps the rank bounded when the remaining bits are all zero
+        int rank = Long.numberOfLeadingZeros((hash << precision) | (1L << (precision - 1))) + 1;
+        update(register, rank);
+    }
+
+    // Hashes a small integer such as a dictionary code
+    public void addInt(int value) {
+        add(mix64(value));
+    }
+
+    private void update(int register, int rank) {
+        if (registers != null) {
+            if (rank > registers[register]) registers[register] = (byte) rank;
+            return;
+        }
+
+        int mask = sparse.length - 1;
+        int slot = (register * 0x9E3779B9) >>> 16 & mask;
+        while (true) {
+            int entry = sparse[slot];
+            if (entry == 0) {
+                sparse[slot] = (register + 1) << 8 | rank;
+                sparseSize++;
+                if (sparseSize * 2 > sparse.length) growSparse();
+                return;
+            }
+            if ((entry >>> 8) - 1 == register) {
+                if (rank > (entry & 0xFF)) sparse[slot] = (register + 1) << 8 | rank;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private void growSparse() {
+        int[] old = sparse;
+        // Past a quarter of the register count the int table outgrows the byte registers
+        if (old.length * 2 > registerCount / 4) {
+            registers = new byte[registerCount];
+            sparse = null;
+            sparseSize = 0;
+            for (int entry : old) {
+                if (entry != 0) update((entry >>> 8) - 1, entry & 0xFF);
+            }
+            return;
+        }
+        sparse = new int[old.length * 2];
+        sparseSize = 0;
+        for (int entry : old) {
+            if (entry != 0) update((entry >>> 8) - 1, entry & 0xFF);
+        }
+    }
+
+    public void merge(HyperLogLog other) {
+        if (other.precision != precision) {
+            throw new IllegalArgumentException("Cannot merge sketches of precision " + precision + " and " + other.precision);
+        }
+        if (other.registers != null) {
+            for (int i = 0; i < registerCount; i++) {
+                if (other.registers[i] != 0) update(i, other.registers[i]);
+            }
+        } else {
+            for (int entry : other.sparse) {
+                if (entry != 0) update((entry >>> 8) - 1, entry & 0xFF);
+            }
+        }
+    }
+
+    public long estimate() {
+        double sum = 0;
+        int zeros = 0;
+        if (registers != null) {
+            for (byte rank : registers) {
+                sum += 1.0 / (1L << rank);
+                if (rank == 0) zeros++;
+            }
+        } else {
+            zeros = registerCount - sparseSize;
+            sum = zeros;
+            for (int entry : sparse) {
+                if (entry != 0) sum += 1.0 / (1L << (entry & 0xFF));
+            }
+        }
+
+        double alpha = 0.7213 / (1 + 1.079 / registerCount);
+        double estimate = alpha * registerCount * registerCount / sum;
+        if (estimate <= 2.5 * registerCount && zeros > 0) {
+            // Linear counting is far more accurate for small cardinalities
+            estimate = registerCount * Math.log((double) registerCount / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    public HyperLogLog copy() {
+        HyperLogLog copy = new HyperLogLog(precision);
+        copy.registers = registers == null ? null : registers.clone();
+        copy.sparse = sparse == null ? null : sparse.clone();
+        copy.sparseSize = sparseSize;
+        return copy;
+    }
+
+    public int getPrecision() { return precision; }
+
+    // Approximate heap footprint of the register storage
+    public int sizeInBytes() {
+        return registers != null ? registers.length : sparse.length * 4;
+    }
+
+    // Finalizer of MurmurHash3, spreads sequential codes over all 64 bits
+    static long mix64(long value) {
+        long h = value + 0x9E3779B97F4A7C15L;
+        h = (h ^ (h >>> 33)) * 0xFF51AFD7ED558CCDL;
+        h = (h ^ (h >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        return h ^ (h >>> 33);
+    }
+
+    @Override
+    public String toString() {
+        return "HyperLogLog{estimate=" + estimate() + ", " + (registers != null ? "dense" : "sparse")
+            + ", bytes=" + sizeInBytes() + "}";
+    }
+}
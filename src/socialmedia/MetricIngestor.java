@@ -0,0 +1,175 @@
+package socialmedia;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Concurrent front door for metric events.
+ * Producers on any thread append to one of several lock-free stripes and return
+ * immediately; a single writer thread drains the stripes and applies events in batches.
+ */
+public class MetricIngestor {
+    private static final int MAX_BATCH = 4096;
+
+    public static class IngestStats {
+        public final long enqueued;
+        public final long applied;
+        public final long queueDepth;
+        public final long batches;
+        public final double eventsPerSecond;        // over the last completed one-second window
+        public final double averageEventsPerSecond; // since the ingestor started
+
+        IngestStats(long enqueued, long applied, long batches, double eventsPerSecond, double averageEventsPerSecond) {
+            this.enqueued = enqueued;
+            this.applied = applied;
+            this.queueDepth = enqueued - applied;
+            this.batches = batches;
+            this.eventsPerSecond = eventsPerSecond;
+            this.averageEventsPerSecond = averageEventsPerSecond;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("enqueued=%d applied=%d depth=%d batches=%d rate=%.0f/s avg=%.0f/s",
+                enqueued, applied, queueDepth, batches, eventsPerSecond, averageEventsPerSecond);
+        }
+    }
+
+    private final List<Queue<AnalyticsEngine.MetricEvent>> stripes;
+    private final Consumer<List<AnalyticsEngine.MetricEvent>> writer;
+    private final AtomicLong enqueued = new AtomicLong();
+    private final AtomicLong applied = new AtomicLong();
+    private final Thread writerThread;
+    private final long startedNanos = System.nanoTime();
+
+    private volatile boolean running = true;
+    private volatile boolean writerIdle;
+    private volatile double lastWindowRate;
+    private volatile long lastWindowEnd = startedNanos;
+    private volatile long batches;
+
+    public MetricIngestor(Consumer<List<AnalyticsEngine.MetricEvent>> writer) {
+        int stripeCount = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors()) * 2);
+        this.stripes = new ArrayList<>(stripeCount);
+        for (int i = 0; i < stripeCount; i++) {
+            stripes.add(new ConcurrentLinkedQueue<>());
+        }
+        this.writer = writer;
+        this.writerThread = new Thread(this::drainLoop, "MetricIngestor");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    public void submit(AnalyticsEngine.MetricEvent event) {
+        enqueued.incrementAndGet();
+        stripeForCurrentThread().add(event);
+        wakeWriter();
+    }
+
+    public void submitAll(Collection<AnalyticsEngine.MetricEvent> events) {
+        if (events.isEmpty()) return;
+        enqueued.addAndGet(events.size());
+        stripeForCurrentThread().addAll(events);
+        wakeWriter();
+    }
+
+    private Queue<AnalyticsEngine.MetricEvent> stripeForCurrentThread() {
+        long id = Thread.currentThread().getId();
+        return stripes.get((int) (id ^ (id >>> 16)) & (stripes.size() - 1));
+    }
+
+    private void wakeWriter() {
+        if (writerIdle) {
+            LockSupport.unpark(writerThread);
+        }
+    }
+
+    private void drainLoop() {
+        List<AnalyticsEngine.MetricEvent> batch = new ArrayList<>(MAX_BATCH);
+        long windowStart = System.nanoTime();
+        long windowApplied = 0;
+
+        while (running || applied.get() < enqueued.get()) {
+            for (Queue<AnalyticsEngine.MetricEvent> stripe : stripes) {
+                AnalyticsEngine.MetricEvent event;
+                while (batch.size() < MAX_BATCH && (event = stripe.poll()) != null) {
+                    batch.add(event);
+                }
+            }
+
+            if (batch.isEmpty()) {
+                writerIdle = true;
+                // Re-check after publishing the idle flag so a concurrent submit is not missed;
+                // submit, awaitApplied and shutdown unpark the writer
+                if (applied.get() == enqueued.get() && running) {
+                    LockSupport.park(this);
+                }
+                writerIdle = false;
+            } else {
+                try {
+                    writer.accept(batch);
+                } catch (RuntimeException e) {
+                    System.err.println("Error applying metric batch: " + e.getMessage());
+                }
+                applied.addAndGet(batch.size());
+                windowApplied += batch.size();
+                batches++;
+                batch.clear();
+            }
+
+            long now = System.nanoTime();
+            if (now - windowStart >= 1_000_000_000L) {
+                lastWindowRate = windowApplied * 1e9 / (now - windowStart);
+                lastWindowEnd = now;
+                windowStart = now;
+                windowApplied = 0;
+            }
+        }
+    }
+
+    /**
+     * Waits until every event submitted before this call has been applied.
+     * Returns false if that did not happen within the timeout.
+     */
+    public boolean awaitApplied(long timeoutMillis) {
+        long target = enqueued.get();
+        long deadline = System.nanoTime() + timeoutMillis * 1_000_000L;
+        while (applied.get() < target) {
+            if (System.nanoTime() > deadline || !writerThread.isAlive()) return false;
+            LockSupport.unpark(writerThread);
+            LockSupport.parkNanos(100_000);
+        }
+        return true;
+    }
+
+    public IngestStats getStats() {
+        long appliedNow = applied.get();
+        long now = System.nanoTime();
+        double seconds = (now - startedNanos) / 1e9;
+        // The writer only closes a window when it wakes, so a long idle spell reads as no traffic
+        double windowRate = now - lastWindowEnd > 2_000_000_000L ? 0 : lastWindowRate;
+        return new IngestStats(enqueued.get(), appliedNow, batches, windowRate,
+            seconds <= 0 ? 0 : appliedNow / seconds);
+    }
+
+    public long getQueueDepth() {
+        return enqueued.get() - applied.get();
+    }
+
+    // Stops accepting work once everything already submitted has been applied
+    public void shutdown() {
+        running = false;
+        LockSupport.unpark(writerThread);
+        try {
+            writerThread.join(30000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
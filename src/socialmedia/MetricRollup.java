@@ -0,0 +1,178 @@
+package socialmedia;
+
+import java.util.Arrays;
+
+/**
+ * Minute, hour and day rollups for one series, maintained as points arrive.
+ * Window aggregates use the coarsest buckets that fit inside the window,
+ * so a query costs O(buckets) instead of O(raw points).
+ * Minute buckets are only kept for the last MINUTE_HORIZON_DAYS days of the series;
+ * older windows are answered from hour and day buckets.
+ */
+public class MetricRollup {
+    public static final int MINUTE_HORIZON_DAYS = 7;
+    
+    public enum Granularity {
+        MINUTE(60), HOUR(3600), DAY(86400);
+        
+        public final long seconds;
+        
+        Granularity(long seconds) {
+            this.seconds = seconds;
+        }
+        
+        public long floor(long epochSecond) {
+            return Math.floorDiv(epochSecond, seconds) * seconds;
+        }
+        
+        public long ceil(long epochSecond) {
+            long floor = floor(epochSecond);
+            return floor == epochSecond ? floor : floor + seconds;
+        }
+    }
+    
+    private final RollupLevel minutes = new RollupLevel(Granularity.MINUTE);
+    private final RollupLevel hours = new RollupLevel(Granularity.HOUR);
+    private final RollupLevel days = new RollupLevel(Granularity.DAY);
+    
+    // Points that arrived behind the newest minute bucket, merged in on the next read
+    private long[] pendingTimes = new long[0];
+    private int[] pendingValues = new int[0];
+    private volatile int pendingSize; // cleared last by a flush
+    
+    public void add(long epochSecond, int value) {
+        if (pendingSize == 0 && minutes.isInOrder(epochSecond)) {
+            boolean newDay = days.size() == 0 || Granularity.DAY.floor(epochSecond) > days.newestStart();
+            minutes.add(epochSecond, value);
+            hours.add(epochSecond, value);
+            days.add(epochSecond, value);
+            if (newDay) trimMinutes();
+            return;
+        }
+        if (pendingSize == pendingTimes.length) {
+            int capacity = Math.max(16, pendingSize * 2);
+            pendingTimes = Arrays.copyOf(pendingTimes, capacity);
+            pendingValues = Arrays.copyOf(pendingValues, capacity);
+        }
+        pendingTimes[pendingSize] = epochSecond;
+        pendingValues[pendingSize] = value;
+        pendingSize++;
+    }
+    
+    private void flushPending() {
+        if (pendingSize != 0) mergePending();
+    }
+    
+    // Concurrent readers may both find pending points; only one merges them
+    private synchronized void mergePending() {
+        if (pendingSize == 0) return;
+        Integer[] boxed = new Integer[pendingSize];
+        for (int i = 0; i < pendingSize; i++) {
+            boxed[i] = i;
+        }
+        // Arrays.sort on objects is stable, so equal timestamps keep arrival order
+        Arrays.sort(boxed, (a, b) -> Long.compare(pendingTimes[a], pendingTimes[b]));
+        int[] order = new int[pendingSize];
+        for (int i = 0; i < pendingSize; i++) {
+            order[i] = boxed[i];
+        }
+        
+        minutes.addSorted(pendingTimes, pendingValues, order, pendingSize);
+        hours.addSorted(pendingTimes, pendingValues, order, pendingSize);
+        days.addSorted(pendingTimes, pendingValues, order, pendingSize);
+        pendingTimes = new long[0];
+        pendingValues = new int[0];
+        pendingSize = 0;
+        trimMinutes();
+    }
+    
+    /**
+     * Applies a retention policy to the buckets: minutes for its raw period, hours for its
+     * hourly period, days forever. Returns true if any bucket was dropped.
+     */
+    public boolean applyRetention(RetentionPolicy policy, long now) {
+        flushPending();
+        int before = minutes.size() + hours.size();
+        minutes.dropBefore(Granularity.HOUR.floor(now - policy.getRawDays() * Granularity.DAY.seconds));
+        hours.dropBefore(Granularity.DAY.floor(now - policy.getHourlyDays() * Granularity.DAY.seconds));
+        return minutes.size() + hours.size() < before;
+    }
+    
+    // Drops minute buckets more than the horizon before the newest day; runs once per new day
+    void trimMinutes() {
+        if (days.size() == 0) return;
+        minutes.dropBefore(days.newestStart() - (MINUTE_HORIZON_DAYS - 1) * Granularity.DAY.seconds);
+    }
+    
+    public RollupLevel buckets(Granularity granularity) {
+        flushPending();
+        switch (granularity) {
+            case MINUTE: return minutes;
+            case HOUR: return hours;
+            default: return days;
+        }
+    }
+    
+    /**
+     * Aggregates every point with from <= timestamp < to.
+     * Exact as long as stored timestamps are minute aligned, which is the precision
+     * of the analytics log, and both ends lie within the minute horizon. An end older
+     * than a level's retained start is widened to the enclosing bucket of the next
+     * coarser level, so such a window may take in up to an hour (or day) more.
+     */
+    public RollupBucket aggregate(long from, long to) {
+        flushPending();
+        RollupBucket result = new RollupBucket();
+        if (from >= to) return result;
+        if (Granularity.HOUR.floor(from) < minutes.getRetainedFrom()) from = Granularity.HOUR.floor(from);
+        if (Granularity.HOUR.floor(to) < minutes.getRetainedFrom()) to = Granularity.HOUR.ceil(to);
+        if (Granularity.DAY.floor(from) < hours.getRetainedFrom()) from = Granularity.DAY.floor(from);
+        if (Granularity.DAY.floor(to) < hours.getRetainedFrom()) to = Granularity.DAY.ceil(to);
+        
+        // Whole hours inside the window, and whole days inside those hours
+        long hourStart = Granularity.HOUR.ceil(from);
+        long hourEnd = Granularity.HOUR.floor(to);
+        if (hourStart >= hourEnd) {
+            minutes.fold(result, from, to);
+            return result;
+        }
+        long dayStart = Granularity.DAY.ceil(hourStart);
+        long dayEnd = Granularity.DAY.floor(hourEnd);
+        if (dayStart >= dayEnd) {
+            dayStart = hourEnd;
+            dayEnd = hourEnd;
+        }
+        
+        minutes.fold(result, from, hourStart);
+        hours.fold(result, hourStart, dayStart);
+        days.fold(result, dayStart, dayEnd);
+        hours.fold(result, dayEnd, hourEnd);
+        minutes.fold(result, hourEnd, to);
+        return result;
+    }
+    
+    // Used when restoring persisted rollups; an empty bucket restores where the level was trimmed
+    void putBucket(Granularity granularity, long bucketStart, RollupBucket bucket) {
+        if (bucket.count == 0) {
+            buckets(granularity).dropBefore(bucketStart);
+        } else {
+            buckets(granularity).put(bucketStart, bucket);
+        }
+    }
+    
+    public void clear() {
+        pendingSize = 0;
+        minutes.clear();
+        hours.clear();
+        days.clear();
+    }
+    
+    public boolean isEmpty() {
+        return pendingSize == 0 && days.size() == 0;
+    }
+    
+    public int bucketCount() {
+        flushPending();
+        return minutes.size() + hours.size() + days.size();
+    }
+}
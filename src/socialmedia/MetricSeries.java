@@ -0,0 +1,235 @@
+package socialmedia;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Columnar storage for one (user, platform, metric) series.
+ * Each data point costs a long timestamp, an int value and an int content id code.
+ * Points are read in timestamp order (arrival order among equal timestamps),
+ * so time ranges are found by binary search.
+ */
+public class MetricSeries {
+    private static final int INITIAL_CAPACITY = 16;
+    
+    private long[] timestamps;  // epoch seconds of the local wall-clock time
+    private int[] values;
+    private int[] contentIds;   // codes in the store's content id dictionary
+    private int size;
+    private volatile int sortedPrefix; // points [0, sortedPrefix) are in timestamp order; written last by a merge
+    private final MetricRollup rollup = new MetricRollup();
+    private final MetricSketches sketches = new MetricSketches();
+    private final SlidingWindow[] windows = new SlidingWindow[SlidingWindow.Span.values().length];
+    
+    // Newest point seen so far, kept on arrival so reading it never needs a sort
+    private long latestTimestamp = Long.MIN_VALUE;
+    private int latestValue;
+    private int latestContentId;
+    
+    public MetricSeries() {
+        this.timestamps = new long[INITIAL_CAPACITY];
+        this.values = new int[INITIAL_CAPACITY];
+        this.contentIds = new int[INITIAL_CAPACITY];
+        for (SlidingWindow.Span span : SlidingWindow.Span.values()) {
+            windows[span.ordinal()] = new SlidingWindow(span);
+        }
+    }
+    
+    public void add(long epochSecond, int value, int contentId) {
+        ensureCapacity(size + 1);
+        // Out-of-order points are appended as an unsorted tail and merged in on the next read
+        if (sortedPrefix == size && (size == 0 || epochSecond >= timestamps[size - 1])) {
+            sortedPrefix++;
+        }
+        timestamps[size] = epochSecond;
+        values[size] = value;
+        contentIds[size] = contentId;
+        size++;
+        sketches.add(epochSecond, value, contentId);
+        for (SlidingWindow window : windows) {
+            window.add(epochSecond, value);
+        }
+        
+        // Ties go to the later arrival: recordMetric truncates to the minute, so several
+        // updates can share the newest timestamp and the last one is the current value
+        if (epochSecond >= latestTimestamp) {
+            latestTimestamp = epochSecond;
+            latestValue = value;
+            latestContentId = contentId;
+        }
+    }
+    
+    private void ensureCapacity(int required) {
+        if (required <= timestamps.length) return;
+        int newCapacity = Math.max(required, timestamps.length + (timestamps.length >> 1));
+        timestamps = Arrays.copyOf(timestamps, newCapacity);
+        values = Arrays.copyOf(values, newCapacity);
+        contentIds = Arrays.copyOf(contentIds, newCapacity);
+    }
+    
+    /**
+     * Sorts the unsorted tail and merges it with the sorted prefix.
+     * The result goes into fresh arrays rather than being rearranged in place,
+     * so views handed out earlier keep seeing consistent data.
+     * Several readers may get here at once, so the merge itself is serialized.
+     */
+    private void ensureSorted() {
+        if (sortedPrefix != size) mergeTail();
+    }
+    
+    private synchronized void mergeTail() {
+        if (sortedPrefix == size) return;
+        
+        int tailLength = size - sortedPrefix;
+        int[] tail = new int[tailLength];
+        for (int i = 0; i < tailLength; i++) {
+            tail[i] = sortedPrefix + i;
+        }
+        tail = stableSortByTimestamp(tail);
+        
+        int capacity = Math.max(size, timestamps.length);
+        long[] newTimestamps = new long[capacity];
+        int[] newValues = new int[capacity];
+        int[] newContentIds = new int[capacity];
+        
+        // Prefix wins ties: its points arrived before the tail's
+        int p = 0;
+        int t = 0;
+        for (int out = 0; out < size; out++) {
+            int source;
+            if (t >= tailLength || (p < sortedPrefix && timestamps[p] <= timestamps[tail[t]])) {
+                source = p++;
+            } else {
+                source = tail[t++];
+            }
+            newTimestamps[out] = timestamps[source];
+            newValues[out] = values[source];
+            newContentIds[out] = contentIds[source];
+        }
+        
+        timestamps = newTimestamps;
+        values = newValues;
+        contentIds = newContentIds;
+        sortedPrefix = size;
+    }
+    
+    // Bottom-up merge sort of point indices; stable, so arrival order survives for equal timestamps
+    private int[] stableSortByTimestamp(int[] indices) {
+        int[] source = indices;
+        int[] target = new int[indices.length];
+        for (int width = 1; width < indices.length; width *= 2) {
+            for (int low = 0; low < indices.length; low += 2 * width) {
+                int mid = Math.min(low + width, indices.length);
+                int high = Math.min(low + 2 * width, indices.length);
+                int i = low;
+                int j = mid;
+                for (int out = low; out < high; out++) {
+                    if (j >= high || (i < mid && timestamps[source[i]] <= timestamps[source[j]])) {
+                        target[out] = source[i++];
+                    } else {
+                        target[out] = source[j++];
+                    }
+                }
+            }
+            int[] swap = source;
+            source = target;
+            target = swap;
+        }
+        return source;
+    }
+    
+    // First index whose timestamp is >= epochSecond
+    public int lowerBound(long epochSecond) {
+        ensureSorted();
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (timestamps[mid] < epochSecond) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+    
+    // First index whose timestamp is > epochSecond
+    public int upperBound(long epochSecond) {
+        ensureSorted();
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (timestamps[mid] <= epochSecond) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+    
+    // Points with from <= timestamp < to, without copying
+    public SeriesView range(long from, long to) {
+        int start = lowerBound(from);
+        int end = Math.max(start, lowerBound(to));
+        return new SeriesView(timestamps, values, contentIds, start, end);
+    }
+    
+    /**
+     * Takes over the raw points of a downsampled copy of this series, recoding its content
+     * ids into this store's dictionary. Rollups, sketches, windows and the latest value
+     * were built from every point before downsampling; applyRetention thins the first two.
+     */
+    void replacePoints(MetricSeries thinned, IntUnaryOperator recode) {
+        thinned.ensureSorted();
+        int[] codes = new int[thinned.size];
+        for (int i = 0; i < codes.length; i++) {
+            codes[i] = recode.applyAsInt(thinned.contentIds[i]);
+        }
+        timestamps = Arrays.copyOf(thinned.timestamps, thinned.size);
+        values = Arrays.copyOf(thinned.values, thinned.size);
+        contentIds = codes;
+        size = thinned.size;
+        sortedPrefix = size;
+    }
+    
+    // Drops rollup buckets and folds day sketches past the policy's periods; true if anything went
+    boolean applyRetention(RetentionPolicy policy, long now) {
+        boolean rollupsTrimmed = rollup.applyRetention(policy, now);
+        boolean sketchesFolded = sketches.foldBefore(now - policy.getHourlyDays() * MetricRollup.Granularity.DAY.seconds);
+        return rollupsTrimmed || sketchesFolded;
+    }
+    
+    public void trimToSize() {
+        ensureSorted();
+        if (size == timestamps.length) return;
+        timestamps = Arrays.copyOf(timestamps, size);
+        values = Arrays.copyOf(values, size);
+        contentIds = Arrays.copyOf(contentIds, size);
+    }
+    
+    public int size() { return size; }
+    public long timestampAt(int index) { ensureSorted(); return timestamps[index]; }
+    public int valueAt(int index) { ensureSorted(); return values[index]; }
+    public int contentIdAt(int index) { ensureSorted(); return contentIds[index]; }
+    public MetricRollup getRollup() { return rollup; }
+    public MetricSketches getSketches() { return sketches; }
+    public SlidingWindow getWindow(SlidingWindow.Span span) { return windows[span.ordinal()]; }
+    
+    // Latest point in timestamp order, in constant time; only meaningful when size() > 0
+    public long getLatestTimestamp() { return latestTimestamp; }
+    public int getLatestValue() { return latestValue; }
+    public int getLatestContentId() { return latestContentId; }
+    
+    public static long toEpochSecond(LocalDateTime timestamp) {
+        return timestamp.toEpochSecond(ZoneOffset.UTC);
+    }
+    
+    public static LocalDateTime toLocalDateTime(long epochSecond) {
+        return LocalDateTime.ofEpochSecond(epochSecond, 0, ZoneOffset.UTC);
+    }
+}
@@ -0,0 +1,50 @@
+package socialmedia;
+
+/**
+ * Fixed-size summary of a set of metric points: distinct content ids and value quantiles.
+ * Sketches merge without loss of their guarantees, so a summary over many days or many
+ * accounts is the merge of the per-bucket sketches rather than a rescan of raw points.
+ */
+public class MetricSketch {
+    private final HyperLogLog distinctContent;
+    private final QuantileSketch values;
+
+    public MetricSketch() {
+        this(new HyperLogLog(), new QuantileSketch());
+    }
+
+    private MetricSketch(HyperLogLog distinctContent, QuantileSketch values) {
+        this.distinctContent = distinctContent;
+        this.values = values;
+    }
+
+    // contentCode is the store's dictionary code, so equal content ids hash equally across users
+    public void add(int value, int contentCode) {
+        distinctContent.addInt(contentCode);
+        values.add(value);
+    }
+
+    public void merge(MetricSketch other) {
+        distinctContent.merge(other.distinctContent);
+        values.merge(other.values);
+    }
+
+    public MetricSketch copy() {
+        return new MetricSketch(distinctContent.copy(), values.copy());
+    }
+
+    public long getDistinctContent() { return distinctContent.estimate(); }
+    public long getCount() { return values.getCount(); }
+    public double quantile(double q) { return values.quantile(q); }
+    public double getP50() { return values.quantile(0.50); }
+    public double getP95() { return values.quantile(0.95); }
+    public double getP99() { return values.quantile(0.99); }
+    public double getMin() { return values.getMin(); }
+    public double getMax() { return values.getMax(); }
+
+    @Override
+    public String toString() {
+        return String.format("count=%d distinct=%d p50=%.1f p95=%.1f p99=%.1f",
+            getCount(), getDistinctContent(), getP50(), getP95(), getP99());
+    }
+}
@@ -0,0 +1,98 @@
+package socialmedia;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Per-day sketches of one series.
+ * Each day keeps its own mergeable sketch; any range of whole days is answered
+ * by merging the day sketches. Retention folds days past its hourly period into one
+ * sketch per month, so years of history cost a sketch per month rather than per day.
+ * Sketches live in memory only and are rebuilt from the stored points after a restart.
+ */
+public class MetricSketches {
+    private final TreeMap<Long, MetricSketch> days = new TreeMap<>();
+    private final TreeMap<Long, MetricSketch> months = new TreeMap<>(); // folded days, keyed by month start
+    private long foldedBefore = Long.MIN_VALUE; // days before this live in months
+    private long currentDay = Long.MIN_VALUE; // most recently touched bucket, skips the map lookup
+    private MetricSketch current;
+
+    public void add(long epochSecond, int value, int contentCode) {
+        long day = MetricRollup.Granularity.DAY.floor(epochSecond);
+        if (day != currentDay) {
+            current = day < foldedBefore
+                ? months.computeIfAbsent(monthOf(day), m -> new MetricSketch())
+                : days.computeIfAbsent(day, d -> new MetricSketch());
+            currentDay = day;
+        }
+        current.add(value, contentCode);
+    }
+
+    /**
+     * Merged sketch of every day bucket overlapping [from, to).
+     * Resolution is one day, or one month before the fold point: a partially covered
+     * bucket contributes all of its points.
+     */
+    public MetricSketch merged(long from, long to) {
+        MetricSketch result = new MetricSketch();
+        mergeInto(result, from, to);
+        return result;
+    }
+
+    // Adds the buckets overlapping [from, to) to an existing sketch
+    public void mergeInto(MetricSketch target, long from, long to) {
+        if (from >= to) return;
+        long firstDay = MetricRollup.Granularity.DAY.floor(from);
+        if (firstDay < foldedBefore) {
+            for (MetricSketch sketch : months.subMap(monthOf(firstDay), true, to, false).values()) {
+                target.merge(sketch);
+            }
+        }
+        for (MetricSketch sketch : days.subMap(firstDay, true, to, false).values()) {
+            target.merge(sketch);
+        }
+    }
+
+    /**
+     * Merges every day bucket before cutoff into its month's sketch; later points
+     * before cutoff go straight to the month. Returns true if any day was folded.
+     */
+    public boolean foldBefore(long cutoff) {
+        long day = MetricRollup.Granularity.DAY.floor(cutoff);
+        if (day <= foldedBefore) return false;
+        foldedBefore = day;
+        currentDay = Long.MIN_VALUE;
+        current = null;
+        boolean folded = false;
+        Iterator<Map.Entry<Long, MetricSketch>> old = days.headMap(day, false).entrySet().iterator();
+        while (old.hasNext()) {
+            Map.Entry<Long, MetricSketch> entry = old.next();
+            months.computeIfAbsent(monthOf(entry.getKey()), m -> new MetricSketch()).merge(entry.getValue());
+            old.remove();
+            folded = true;
+        }
+        return folded;
+    }
+
+    private static long monthOf(long day) {
+        return MetricSeries.toEpochSecond(MetricSeries.toLocalDateTime(day).toLocalDate().withDayOfMonth(1).atStartOfDay());
+    }
+
+    public MetricSketch day(long epochSecond) {
+        MetricSketch sketch = days.get(MetricRollup.Granularity.DAY.floor(epochSecond));
+        return sketch == null ? new MetricSketch() : sketch.copy();
+    }
+
+    public int bucketCount() {
+        return days.size() + months.size();
+    }
+
+    public void clear() {
+        days.clear();
+        months.clear();
+        foldedBefore = Long.MIN_VALUE;
+        currentDay = Long.MIN_VALUE;
+        current = null;
+    }
+}
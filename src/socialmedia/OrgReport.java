@@ -0,0 +1,176 @@
+package socialmedia;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Organisation-wide analytics summary across every tracked account.
+ * Built from per-user partial results that merge associatively, so the users
+ * can be processed on any number of threads in any order.
+ */
+public class OrgReport {
+
+    // One metric on one platform: growth over the accounts with a trend in the window,
+    // latestTotal over every account with data for the metric
+    public static class MetricSummary {
+        public final String platform;
+        public final String metric;
+        private int accounts; // accounts with a trend
+        private long totalChange;
+        private double growthRateSum;
+        private double minGrowthRate = Double.POSITIVE_INFINITY;
+        private double maxGrowthRate = Double.NEGATIVE_INFINITY;
+        private String topAccount;
+        private long latestTotal; // sum of each account's latest value, e.g. total followers
+        private final MetricSketch sketch = new MetricSketch(); // all accounts' points in the window
+
+        MetricSummary(String platform, String metric) {
+            this.platform = platform;
+            this.metric = metric;
+        }
+
+        void addTrend(String username, AnalyticsEngine.TrendAnalysis trend) {
+            accounts++;
+            totalChange += trend.totalChange;
+            growthRateSum += trend.growthRate;
+            minGrowthRate = Math.min(minGrowthRate, trend.growthRate);
+            if (isBetterTop(trend.growthRate, username)) {
+                maxGrowthRate = trend.growthRate;
+                topAccount = username;
+            }
+        }
+
+        void addLatest(int value) {
+            latestTotal += value;
+        }
+
+        void merge(MetricSummary other) {
+            accounts += other.accounts;
+            totalChange += other.totalChange;
+            growthRateSum += other.growthRateSum;
+            minGrowthRate = Math.min(minGrowthRate, other.minGrowthRate);
+            if (other.topAccount != null && isBetterTop(other.maxGrowthRate, other.topAccount)) {
+                maxGrowthRate = other.maxGrowthRate;
+                topAccount = other.topAccount;
+            }
+            latestTotal += other.latestTotal;
+            sketch.merge(other.sketch);
+        }
+
+        // Ties go to the smaller username so the result does not depend on how users were split
+        private boolean isBetterTop(double growthRate, String username) {
+            return topAccount == null || growthRate > maxGrowthRate
+                || (growthRate == maxGrowthRate && username.compareTo(topAccount) < 0);
+        }
+
+        public int getAccounts() { return accounts; }
+        public long getTotalChange() { return totalChange; }
+        public double getAverageGrowthRate() { return accounts == 0 ? 0 : growthRateSum / accounts; }
+        public double getMinGrowthRate() { return accounts == 0 ? 0 : minGrowthRate; }
+        public double getMaxGrowthRate() { return accounts == 0 ? 0 : maxGrowthRate; }
+        public String getTopAccount() { return topAccount; }
+        public long getLatestTotal() { return latestTotal; }
+        // Distinct content ids and value percentiles over the window, day resolution
+        public long getDistinctContent() { return sketch.getDistinctContent(); }
+        public double getValuePercentile(double q) { return sketch.quantile(q); }
+        public MetricSketch getSketch() { return sketch.copy(); }
+    }
+
+    public static class PlatformSummary {
+        public final String platform;
+        private int accounts;
+        private long records;
+        private final Map<String, MetricSummary> metrics = new TreeMap<>();
+
+        PlatformSummary(String platform) {
+            this.platform = platform;
+        }
+
+        MetricSummary metric(String metric) {
+            return metrics.computeIfAbsent(metric, m -> new MetricSummary(platform, m));
+        }
+
+        void merge(PlatformSummary other) {
+            accounts += other.accounts;
+            records += other.records;
+            for (MetricSummary summary : other.metrics.values()) {
+                metric(summary.metric).merge(summary);
+            }
+        }
+
+        public int getAccounts() { return accounts; }
+        public long getRecords() { return records; }
+        public Map<String, MetricSummary> getMetrics() { return Collections.unmodifiableMap(metrics); }
+    }
+
+    private final int daysBack;
+    private int users;
+    private long totalRecords;
+    private final Map<String, PlatformSummary> platforms = new TreeMap<>();
+    private long elapsedMillis;
+    private int parallelism;
+
+    OrgReport(int daysBack) {
+        this.daysBack = daysBack;
+    }
+
+    // Folds one account into this partial report; called by a single thread per partial
+    void addUser(String username, Map<String, Map<String, MetricSeries>> userSeries,
+                 Iterable<AnalyticsEngine.TrendAnalysis> trends, long cutoff) {
+        users++;
+        for (Map.Entry<String, Map<String, MetricSeries>> platformEntry : userSeries.entrySet()) {
+            PlatformSummary platform = platform(platformEntry.getKey());
+            platform.accounts++;
+            for (Map.Entry<String, MetricSeries> metricEntry : platformEntry.getValue().entrySet()) {
+                MetricSeries series = metricEntry.getValue();
+                platform.records += series.size();
+                totalRecords += series.size();
+                if (series.size() > 0) {
+                    MetricSummary summary = platform.metric(metricEntry.getKey());
+                    summary.addLatest(series.getLatestValue());
+                    series.getSketches().mergeInto(summary.sketch, cutoff, Long.MAX_VALUE);
+                }
+            }
+        }
+        for (AnalyticsEngine.TrendAnalysis trend : trends) {
+            platform(trend.platform).metric(trend.metric).addTrend(username, trend);
+        }
+    }
+
+    void merge(OrgReport other) {
+        users += other.users;
+        totalRecords += other.totalRecords;
+        for (PlatformSummary summary : other.platforms.values()) {
+            platform(summary.platform).merge(summary);
+        }
+    }
+
+    private PlatformSummary platform(String platform) {
+        return platforms.computeIfAbsent(platform, PlatformSummary::new);
+    }
+
+    void setTiming(long elapsedMillis, int parallelism) {
+        this.elapsedMillis = elapsedMillis;
+        this.parallelism = parallelism;
+    }
+
+    public int getDaysBack() { return daysBack; }
+    public int getUsers() { return users; }
+    public long getTotalRecords() { return totalRecords; }
+    public Map<String, PlatformSummary> getPlatforms() { return Collections.unmodifiableMap(platforms); }
+    public long getElapsedMillis() { return elapsedMillis; }
+    public int getParallelism() { return parallelism; }
+
+    // Flat view keyed "platform/metric", handy for callers that do not care about the nesting
+    public Map<String, MetricSummary> getMetricSummaries() {
+        Map<String, MetricSummary> flat = new LinkedHashMap<>();
+        for (PlatformSummary platform : platforms.values()) {
+            for (MetricSummary metric : platform.metrics.values()) {
+                flat.put(platform.platform + "/" + metric.metric, metric);
+            }
+        }
+        return flat;
+    }
+}
@@ -0,0 +1,157 @@
+package socialmedia;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+
+/**
+ * Published scheduled posts, partitioned by month and user:
+ * {@code <root>/<yyyy-MM>/<username>.csv}, keyed by the scheduled time.
+ * Posts leave the scheduler's active set once they are here, so the queue, the
+ * index and the checkpoint snapshot only ever hold pending work.
+ * Each post is appended once: the scheduler logs whether a published post reached the
+ * archive, and replay after a crash only archives those that did not. Reads still keep
+ * the first copy of an ID, for archives written before that was logged.
+ */
+public class PostArchive {
+    static final String HEADER = "Username,PostId,Content,ScheduledTime,Platform,PostedAt";
+    private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+    private static final DateTimeFormatter MONTH = DateTimeFormatter.ofPattern("yyyy-MM");
+    private static final int MAX_OPEN_WRITERS = 32;
+
+    private final File root;
+    // Recently written partitions stay open; the least recently used one is closed first
+    private final Map<File, BufferedWriter> writers = new LinkedHashMap<File, BufferedWriter>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<File, BufferedWriter> eldest) {
+            if (size() <= MAX_OPEN_WRITERS) return false;
+            closeQuietly(eldest.getValue());
+            return true;
+        }
+    };
+
+    public PostArchive(String rootPath) {
+        this.root = new File(rootPath);
+    }
+
+    // Flushed before returning, so the caller may log the post as published afterwards
+    public synchronized void append(ScheduledPost post) throws IOException {
+        write(post);
+        writerFor(partitionOf(post.getAuthor(), YearMonth.from(post.getScheduledTime()))).flush();
+    }
+
+    public synchronized void appendAll(Collection<ScheduledPost> posts) throws IOException {
+        for (ScheduledPost post : posts) {
+            write(post);
+        }
+        for (BufferedWriter writer : writers.values()) {
+            writer.flush();
+        }
+    }
+
+    private void write(ScheduledPost post) throws IOException {
+        BufferedWriter writer = writerFor(partitionOf(post.getAuthor(), YearMonth.from(post.getScheduledTime())));
+        if (post.getPostedAt() == null) throw new IOException("Post " + post.getPostId() + " has no publish time");
+        writer.write(String.format("%s,%s,\"%s\",%s,%s,%s",
+            post.getAuthor(),
+            post.getPostId(),
+            post.getContent().replace("\"", "\"\""),
+            post.getFormattedScheduledTime(),
+            post.getPlatform(),
+            post.getFormattedPostedAt()));
+        writer.newLine();
+    }
+
+    private BufferedWriter writerFor(File partition) throws IOException {
+        BufferedWriter writer = writers.get(partition);
+        if (writer != null) return writer;
+
+        File dir = partition.getParentFile();
+        if (!dir.exists()) dir.mkdirs();
+        boolean isNewFile = !partition.exists() || partition.length() == 0;
+        writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(partition, true), StandardCharsets.UTF_8));
+        if (isNewFile) {
+            writer.write(HEADER);
+            writer.newLine();
+        }
+        writers.put(partition, writer);
+        return writer;
+    }
+
+    /** Months holding archived posts for the user, newest first. */
+    public synchronized List<YearMonth> months(String username) {
+        List<YearMonth> months = new ArrayList<>();
+        File[] dirs = root.listFiles(File::isDirectory);
+        if (dirs == null) return months;
+        for (File dir : dirs) {
+            try {
+                YearMonth month = YearMonth.parse(dir.getName(), MONTH);
+                if (partitionOf(username, month).exists()) months.add(month);
+            } catch (DateTimeParseException e) {
+                // Not a partition directory
+            }
+        }
+        months.sort(Comparator.reverseOrder());
+        return months;
+    }
+
+    /** One month of a user's archived posts in scheduled order. */
+    public synchronized List<ScheduledPost> query(String username, YearMonth month) {
+        File partition = partitionOf(username, month);
+        if (!partition.exists()) return new ArrayList<>();
+        try {
+            BufferedWriter open = writers.get(partition);
+            if (open != null) open.flush();
+        } catch (IOException e) {
+            System.err.println("Error flushing post archive: " + e.getMessage());
+        }
+
+        Map<String, ScheduledPost> posts = new LinkedHashMap<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new FileInputStream(partition), StandardCharsets.UTF_8))) {
+            String line = reader.readLine(); // Skip header
+            while ((line = reader.readLine()) != null) {
+                String[] parts = PostScheduler.parseCSVLine(line);
+                // Sanitized file names can be shared, so the row decides whose post it is
+                if (parts.length < 6 || !parts[0].equals(username) || posts.containsKey(parts[1])) continue;
+                try {
+                    ScheduledPost post = new ScheduledPost(parts[2], LocalDateTime.parse(parts[3], FORMATTER),
+                        parts[4], parts[0], parts[1]);
+                    post.markAsPosted(LocalDateTime.parse(parts[5], FORMATTER));
+                    posts.put(post.getPostId(), post);
+                } catch (DateTimeParseException e) {
+                    System.err.println("Error parsing archived post date: " + e.getMessage());
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Error reading post archive: " + e.getMessage());
+        }
+
+        List<ScheduledPost> result = new ArrayList<>(posts.values());
+        result.sort(Comparator.comparing(ScheduledPost::getScheduledTime));
+        return result;
+    }
+
+    private File partitionOf(String username, YearMonth month) {
+        return new File(new File(root, month.format(MONTH)), username.replaceAll("[^A-Za-z0-9._-]", "_") + ".csv");
+    }
+
+    private static void closeQuietly(BufferedWriter writer) {
+        try {
+            writer.close();
+        } catch (IOException e) {
+            System.err.println("Error closing post archive: " + e.getMessage());
+        }
+    }
+
+    public synchronized void close() {
+        for (BufferedWriter writer : writers.values()) {
+            closeQuietly(writer);
+        }
+        writers.clear();
+    }
+}
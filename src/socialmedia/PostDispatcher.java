@@ -0,0 +1,55 @@
+package socialmedia;
+
+import java.time.Clock;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * The dispatch step of the scheduler: takes the posts the due queue has just released
+ * and hands each one to the publisher, or back to the queue while it is over a rate limit.
+ * Reservations are handed out in due order, so a burst drains in that order.
+ * PostScheduler runs it on its dispatcher thread; SchedulerSimulation drives it in
+ * virtual time, so the simulation exercises this exact code.
+ */
+public class PostDispatcher {
+    private final Clock clock;
+    private final ScheduleQueue queue;
+    private final PublishRateLimiter rateLimiter;
+    private final Consumer<ScheduledPost> advance;
+    private final Consumer<ScheduledPost> publish;
+
+    /**
+     * {@code advance} is called once per post, the first time it comes due (recurring
+     * schedules line up their next occurrence there); {@code publish} must not block.
+     */
+    public PostDispatcher(Clock clock, ScheduleQueue queue, PublishRateLimiter rateLimiter,
+                          Consumer<ScheduledPost> advance, Consumer<ScheduledPost> publish) {
+        this.clock = clock;
+        this.queue = queue;
+        this.rateLimiter = rateLimiter;
+        this.advance = advance;
+        this.publish = publish;
+    }
+
+    public void dispatch(List<ScheduledPost> due) {
+        long now = clock.millis();
+        for (ScheduledPost post : due) {
+            if (post.releaseDeferral()) {
+                // Back from a deferral with its tokens already taken
+                rateLimiter.released();
+                if (!post.isPosted() && !post.isCancelled()) publish.accept(post);
+                continue;
+            }
+            if (post.isPosted() || post.isCancelled()) continue;
+            // A retry after a failed publish has already lined up its successor
+            if (post.getFailedAttempts() == 0) advance.accept(post);
+            long at = rateLimiter.reserve(post, now);
+            if (at <= now) {
+                publish.accept(post);
+            } else {
+                post.deferUntil(at);
+                queue.add(post);
+            }
+        }
+    }
+}
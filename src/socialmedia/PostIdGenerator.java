@@ -0,0 +1,112 @@
+package socialmedia;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Monotonic, collision-free scheduled post IDs ("POST_<n>"); recurring schedules draw
+ * "RULE_<n>" IDs from the same sequence.
+ * Numbers come from an atomic counter; the counter may only run up to a limit that
+ * has been written to disk, and the limit is raised one block at a time. A restart
+ * continues from the stored limit, so an ID is never handed out twice even if the
+ * post that carried it was cancelled or the process died mid-block.
+ */
+public class PostIdGenerator {
+    static final String PREFIX = "POST_";
+    static final String RULE_PREFIX = "RULE_";
+    private static final String SEQUENCE_FILE = "profiles/post_ids.seq";
+    private static final long BLOCK = 1 << 16;
+
+    private static PostIdGenerator instance;
+
+    private final File sequenceFile;
+    private final AtomicLong last = new AtomicLong();
+    private volatile long reservedThrough;
+
+    public PostIdGenerator(File sequenceFile) {
+        this.sequenceFile = sequenceFile;
+        long stored = readReserved();
+        this.last.set(stored);
+        this.reservedThrough = stored;
+    }
+
+    public static synchronized PostIdGenerator getInstance() {
+        if (instance == null) instance = new PostIdGenerator(new File(SEQUENCE_FILE));
+        return instance;
+    }
+
+    // Lock-free unless this ID crosses into a block that has not been reserved yet
+    public String next() {
+        return PREFIX + nextNumber();
+    }
+    
+    public String nextRuleId() {
+        return RULE_PREFIX + nextNumber();
+    }
+    
+    private long nextNumber() {
+        long id = last.incrementAndGet();
+        if (id > reservedThrough) reserveThrough(id);
+        return id;
+    }
+
+    /** Makes sure IDs found in persisted posts are never generated again. */
+    public void observe(String postId) {
+        long id = parse(postId);
+        if (id <= 0) return;
+        last.accumulateAndGet(id, Math::max);
+        if (id > reservedThrough) reserveThrough(id);
+    }
+
+    // Older files carry "POST_<millis>_<hash>..." IDs; those cannot clash with plain numbers
+    static long parse(String postId) {
+        if (postId == null) return -1;
+        String prefix = postId.startsWith(PREFIX) ? PREFIX : postId.startsWith(RULE_PREFIX) ? RULE_PREFIX : null;
+        if (prefix == null || postId.length() == prefix.length()) return -1;
+        long value = 0;
+        for (int i = prefix.length(); i < postId.length(); i++) {
+            char c = postId.charAt(i);
+            if (c < '0' || c > '9' || value > (Long.MAX_VALUE - 9) / 10) return -1;
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private synchronized void reserveThrough(long id) {
+        if (id <= reservedThrough) return;
+        long limit = id + BLOCK;
+        try {
+            writeReserved(limit);
+        } catch (IOException e) {
+            // Still unique in this process; only a restart before the next reservation could reuse IDs
+            System.err.println("Error reserving post IDs: " + e.getMessage());
+        }
+        reservedThrough = limit;
+    }
+
+    private long readReserved() {
+        if (!sequenceFile.exists()) return 0;
+        try {
+            String text = new String(Files.readAllBytes(sequenceFile.toPath()), StandardCharsets.UTF_8).trim();
+            return text.isEmpty() ? 0 : Long.parseLong(text);
+        } catch (IOException | NumberFormatException e) {
+            System.err.println("Error reading post ID sequence: " + e.getMessage());
+            return 0;
+        }
+    }
+
+    private void writeReserved(long limit) throws IOException {
+        File dir = sequenceFile.getAbsoluteFile().getParentFile();
+        if (dir != null && !dir.exists()) dir.mkdirs();
+
+        File tmp = new File(sequenceFile.getPath() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(tmp)) {
+            out.write(Long.toString(limit).getBytes(StandardCharsets.UTF_8));
+            out.getChannel().force(false);
+        }
+        Files.move(tmp.toPath(), sequenceFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
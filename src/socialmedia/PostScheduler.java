@@ -1,31 +1,168 @@
 package socialmedia;
 
 import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.Clock;
 import java.time.LocalDateTime;
+import java.time.YearMonth;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 public class PostScheduler {
     private static final String SCHEDULED_POSTS_FILE = "profiles/scheduled_posts.csv";
+    private static final String SCHEDULER_LOG_FILE = "profiles/scheduled_posts.log";
+    private static final String RECURRING_FILE = "profiles/recurring_schedules.csv";
+    private static final String ARCHIVE_DIR = "profiles/archive/scheduled_posts";
+    private static final String ACTIVITY_LOG_FILE = "profiles/logs/post_activity.csv";
+    private static final String METRICS_LOG_FILE = "profiles/logs/scheduler_metrics.csv";
+    private static final String CATCH_UP_LOG_FILE = "profiles/logs/catch_up.csv";
+    private static final long DEFAULT_METRICS_DUMP_MILLIS = 60_000;
+    private static final int DEFAULT_MAX_ATTEMPTS = 5;
+    private static final long DEFAULT_RETRY_BACKOFF_MILLIS = 30_000;
+    private static final int PAGE_SIZE = 10;
     private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+    private static final String OUTCOME_UNKNOWN = "unknown";
     
-    private Map<String, List<ScheduledPost>> userScheduledPosts;
-    private Timer scheduler;
+    private Map<String, Map<String, ScheduledPost>> userScheduledPosts;
+    private final Map<String, ScheduledPost> postsById;
+    private final Map<String, RecurringSchedule> recurringSchedules;
+    private final ScheduleQueue dueQueue;
+    private final SchedulerLog log;
+    private final PostArchive archive;
+    private final PublishingPool publishers;
+    private final PublishRateLimiter rateLimiter;
+    private final PostDispatcher dispatcher;
+    private final RecurringMaterializer recurring;
+    private final AsyncActivityLog<PostActivity> activityLog;
+    private final SchedulerMetrics metrics;
+    private final AsyncActivityLog<SchedulerMetrics.Snapshot> metricsLog;
+    private final ScheduledExecutorService metricsDumper;
+    private ScheduledFuture<?> metricsDump;
+    private final Clock clock;
+    private final CatchUpPolicy catchUpPolicy;
+    private volatile CatchUp catchUp;
+    private AsyncActivityLog<CatchUp.Progress> catchUpLog;
+    private Thread scheduler;
+    private volatile int maxAttempts = DEFAULT_MAX_ATTEMPTS;
+    private volatile long retryBackoffMillis = DEFAULT_RETRY_BACKOFF_MILLIS;
     
     public PostScheduler() {
+        this(Clock.systemDefaultZone());
+    }
+    
+    /**
+     * Runs the scheduler on the given clock (in the system time zone, which due times are
+     * computed in). With a VirtualClock posts go out as the clock is advanced.
+     */
+    public PostScheduler(Clock clock) {
+        this(clock, CatchUpPolicy.publishAll());
+    }
+    
+    // The policy decides what happens to posts that fell due while the application was down
+    public PostScheduler(Clock clock, CatchUpPolicy catchUpPolicy) {
+        this.clock = clock;
+        this.catchUpPolicy = catchUpPolicy;
         this.userScheduledPosts = new ConcurrentHashMap<>();
-        this.scheduler = new Timer("PostScheduler", true);
+        this.postsById = new ConcurrentHashMap<>();
+        this.recurringSchedules = new ConcurrentHashMap<>();
+        this.dueQueue = new ScheduleQueue(clock);
+        if (clock instanceof VirtualClock) ((VirtualClock) clock).addListener(dueQueue::wakeUp);
+        this.log = new SchedulerLog(SCHEDULER_LOG_FILE, this::saveScheduledPosts);
+        this.archive = new PostArchive(ARCHIVE_DIR);
+        this.activityLog = new AsyncActivityLog<>(new File(ACTIVITY_LOG_FILE),
+            "Timestamp,Username,Platform,Content,Type,PostId", PostActivity::toCsv);
+        this.metrics = new SchedulerMetrics();
+        this.metricsLog = new AsyncActivityLog<>(new File(METRICS_LOG_FILE),
+            SchedulerMetrics.CSV_HEADER, SchedulerMetrics.Snapshot::toCsv);
+        this.metricsDumper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "SchedulerMetrics");
+            t.setDaemon(true);
+            return t;
+        });
+        this.rateLimiter = new PublishRateLimiter();
+        this.publishers = new PublishingPool(post -> publishPost(post.getAuthor(), post), this::onPublishResult);
+        this.dispatcher = new PostDispatcher(clock, dueQueue, rateLimiter, this::advanceRecurring, publishers::submit);
+        this.recurring = new RecurringMaterializer(clock, recurringSchedules, PostIdGenerator.getInstance()::next,
+            new RecurringMaterializer.Listener() {
+                @Override
+                public long materialized(RecurringSchedule schedule, ScheduledPost occurrence) {
+                    register(occurrence);
+                    log.schedule(occurrence);
+                    return log.rule(schedule);
+                }
+                
+                @Override
+                public long ended(RecurringSchedule schedule) {
+                    return log.ruleEnded(schedule.getRuleId());
+                }
+            });
         loadScheduledPosts();
+        log.startBackgroundTasks();
+        setMetricsDumpInterval(DEFAULT_METRICS_DUMP_MILLIS);
         startScheduler();
     }
     
+    /**
+     * Schedules many posts at once: every row is indexed in one pass, the snapshot is
+     * written once (instead of a log record per post), and only then are the posts
+     * queued, so none is published before it is on disk. Returns the number scheduled.
+     * If the snapshot cannot be written none of the posts is scheduled.
+     */
+    public int scheduleBulk(List<ScheduleImport.Row> rows) throws IOException {
+        if (rows.isEmpty()) return 0;
+        ScheduledPost[] posts = new ScheduledPost[rows.size()];
+        Arrays.parallelSetAll(posts, i -> {
+            ScheduleImport.Row row = rows.get(i);
+            return new ScheduledPost(row.content, row.scheduledTime, row.platform, row.username);
+        });
+        for (ScheduledPost post : posts) {
+            index(post);
+        }
+        long started = System.nanoTime();
+        try {
+            log.checkpoint(true);
+        } catch (IOException e) {
+            withdraw(posts);
+            throw new IOException("Could not save " + posts.length + " scheduled posts: " + e.getMessage(), e);
+        }
+        metrics.recordSnapshot(System.nanoTime() - started);
+        dueQueue.addAll(Arrays.asList(posts));
+        return posts.length;
+    }
+    
+    // Takes back unsaved bulk posts; a background checkpoint may have caught them, so they are logged as cancelled
+    private void withdraw(ScheduledPost[] posts) {
+        long sequence = 0;
+        for (ScheduledPost post : posts) {
+            post.markCancelled();
+            postsById.remove(post.getPostId(), post);
+            postsOf(post.getAuthor()).remove(post.getPostId());
+            sequence = log.cancel(post.getPostId());
+        }
+        commit(sequence);
+    }
+    
+    // Reads, validates and schedules a CSV or JSON-lines file; see ScheduleImport for the format
+    public ScheduleImport.Result importScheduledPosts(File file) throws IOException {
+        long started = System.currentTimeMillis();
+        ScheduleImport.Result result = ScheduleImport.read(file, LocalDateTime.now(clock));
+        int scheduled = scheduleBulk(result.rows);
+        result.completed(scheduled, System.currentTimeMillis() - started);
+        return result;
+    }
+    
     public void schedulePost(String username, String content, LocalDateTime scheduledTime, String platform) {
         ScheduledPost post = new ScheduledPost(content, scheduledTime, platform, username);
         
-        userScheduledPosts.computeIfAbsent(username, k -> new ArrayList<>()).add(post);
-        saveScheduledPosts();
+        register(post);
+        commit(log.schedule(post));
         
         System.out.println("✅ Post scheduled successfully!");
         System.out.println("📅 Scheduled for: " + post.getFormattedScheduledTime());
@@ -33,139 +170,405 @@ public class PostScheduler {
         System.out.println("📝 Content: " + content.substring(0, Math.min(content.length(), 50)) + "...");
     }
     
+    // Pending posts (and any not yet archived), copied in scheduling order
     public List<ScheduledPost> getUserScheduledPosts(String username) {
-        return userScheduledPosts.getOrDefault(username, new ArrayList<>());
+        Map<String, ScheduledPost> posts = userScheduledPosts.get(username);
+        if (posts == null) return new ArrayList<>();
+        synchronized (posts) {
+            return new ArrayList<>(posts.values());
+        }
+    }
+    
+    public ScheduledPost getScheduledPost(String postId) {
+        return postsById.get(postId);
+    }
+    
+    public List<ScheduledPost> getArchivedPosts(String username, YearMonth month) {
+        return archive.query(username, month);
+    }
+    
+    // Newest first
+    public List<YearMonth> getArchivedMonths(String username) {
+        return archive.months(username);
+    }
+    
+    /**
+     * Schedules a repeating post and returns its rule ID. The rule is a cron expression or an
+     * interval (see RecurrenceRule); it fires from {@code start} until {@code end} (null for
+     * none) or until {@code maxOccurrences} posts have gone out (0 for no limit).
+     */
+    public String scheduleRecurring(String username, String content, String platform, String ruleSpec,
+                                    LocalDateTime start, LocalDateTime end, int maxOccurrences) {
+        RecurrenceRule rule = RecurrenceRule.parse(ruleSpec);
+        RecurringSchedule schedule = new RecurringSchedule(PostIdGenerator.getInstance().nextRuleId(),
+            username, content, platform, rule, start, end, maxOccurrences);
+        if (schedule.nextFire(LocalDateTime.now(clock)) == null) {
+            throw new IllegalArgumentException("Rule '" + ruleSpec + "' never fires between " + start + " and " + end);
+        }
+        recurringSchedules.put(schedule.getRuleId(), schedule);
+        materializeNext(schedule, LocalDateTime.now(clock));
+        
+        System.out.println("✅ Recurring post scheduled: " + schedule.getRuleId() + " (" + rule + ")");
+        ScheduledPost first = postsById.get(String.valueOf(schedule.getPendingPostId()));
+        if (first != null) System.out.println("📅 First post: " + first.getFormattedScheduledTime());
+        return schedule.getRuleId();
+    }
+    
+    public List<RecurringSchedule> getRecurringSchedules(String username) {
+        List<RecurringSchedule> result = new ArrayList<>();
+        for (RecurringSchedule schedule : recurringSchedules.values()) {
+            if (schedule.getAuthor().equals(username)) result.add(schedule);
+        }
+        result.sort(Comparator.comparing(RecurringSchedule::getRuleId));
+        return result;
+    }
+    
+    // Stops the rule and withdraws its pending occurrence
+    public void cancelRecurring(String username, String ruleId) {
+        RecurringSchedule schedule = recurringSchedules.get(ruleId);
+        if (schedule == null || !schedule.getAuthor().equals(username)) {
+            System.out.println("❌ No recurring schedule " + ruleId + " for " + username);
+            return;
+        }
+        long sequence;
+        synchronized (schedule) {
+            if (!recurringSchedules.remove(ruleId, schedule)) return;
+            sequence = log.ruleEnded(ruleId);
+        }
+        commit(sequence);
+        String pending = schedule.getPendingPostId();
+        if (pending != null && postsById.containsKey(pending)) cancelScheduledPost(username, pending);
+        System.out.println("🗑️ Recurring schedule cancelled: " + ruleId);
+    }
+    
+    // Queues the schedule's next occurrence after notBefore, or ends the schedule (see RecurringMaterializer)
+    private void materializeNext(RecurringSchedule schedule, LocalDateTime notBefore) {
+        long sequence = recurring.materializeNext(schedule, notBefore);
+        if (sequence > 0) commit(sequence);
+    }
+    
+    // An occurrence has fired or been withdrawn; line up the one after it
+    private void advanceRecurring(ScheduledPost occurrence) {
+        long sequence = recurring.advance(occurrence);
+        if (sequence > 0) commit(sequence);
+    }
+    
+    // Publishing limits; platforms without their own cap use PublishingPool.DEFAULT_CONCURRENCY
+    public void setPlatformConcurrency(String platform, int maxConcurrent) {
+        publishers.setPlatformConcurrency(platform, maxConcurrent);
+    }
+    
+    public void setPublishTimeoutMillis(long timeoutMillis) {
+        publishers.setTimeoutMillis(timeoutMillis);
+    }
+    
+    // A failed publish is retried after backoffMillis, doubling each time, up to maxAttempts in all;
+    // a timed-out one is held, as it may still have gone out
+    public void setPublishRetry(int maxAttempts, long backoffMillis) {
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.retryBackoffMillis = Math.max(1, backoffMillis);
+    }
+    
+    // Token-bucket limits; posts over a limit are deferred, never dropped. A null limit switches it off
+    public void setPlatformRateLimit(String platform, PublishRateLimiter.Limit limit) {
+        rateLimiter.setPlatformLimit(platform, limit);
+    }
+    
+    public void setDefaultPlatformRateLimit(PublishRateLimiter.Limit limit) {
+        rateLimiter.setDefaultPlatformLimit(limit);
+    }
+    
+    public void setAccountRateLimit(PublishRateLimiter.Limit limit) {
+        rateLimiter.setAccountLimit(limit);
+    }
+    
+    public PublishRateLimiter.ThrottleStats getThrottleStats() {
+        return rateLimiter.stats(dueQueue.size());
+    }
+    
+    /**
+     * Lag, tick, queue and persistence metrics since start. headLagMillis is how far past
+     * its scheduled time the next post to go out already is: it grows as soon as the
+     * dispatcher falls behind, before any late post has been published.
+     */
+    public SchedulerMetrics.Snapshot getMetrics() {
+        return metrics.snapshot(LocalDateTime.now(clock), dueQueue.size(), headLagMillis(),
+            rateLimiter.stats(0).deferralsTotal);
+    }
+    
+    // How often a line of window metrics goes to profiles/logs/scheduler_metrics.csv; 0 stops the dump
+    public synchronized void setMetricsDumpInterval(long intervalMillis) {
+        if (metricsDump != null) metricsDump.cancel(false);
+        metricsDump = intervalMillis <= 0 ? null : metricsDumper.scheduleAtFixedRate(this::dumpMetrics,
+            intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+    
+    private void dumpMetrics() {
+        metricsLog.log(metrics.windowSnapshot(LocalDateTime.now(clock), dueQueue.size(), headLagMillis(),
+            rateLimiter.stats(0).deferralsTotal));
+    }
+    
+    // Throttled posts count too: they are late from the user's point of view
+    private long headLagMillis() {
+        ScheduledPost head = dueQueue.peek();
+        return head == null ? 0 : Math.max(0, clock.millis() - head.getDueEpochMillis());
+    }
+    
+    private void commit(long sequence) {
+        long started = System.nanoTime();
+        log.commit(sequence);
+        metrics.recordCommit(System.nanoTime() - started);
+    }
+    
+    // Rotate post_activity.csv past maxBytes or when the UTC time bucket of rotateMillis changes
+    public void setActivityLogRotation(long maxBytes, long rotateMillis) {
+        activityLog.setMaxBytes(maxBytes);
+        activityLog.setRotateMillis(rotateMillis);
+    }
+    
+    private Map<String, ScheduledPost> postsOf(String username) {
+        return userScheduledPosts.computeIfAbsent(username, k -> Collections.synchronizedMap(new LinkedHashMap<>()));
+    }
+    
+    private void register(ScheduledPost post) {
+        index(post);
+        if (!post.isPosted()) dueQueue.add(post);
+    }
+    
+    // Visible to lookups and cancellation, but not queued
+    private void index(ScheduledPost post) {
+        postsById.put(post.getPostId(), post);
+        postsOf(post.getAuthor()).put(post.getPostId(), post);
     }
     
     public void cancelScheduledPost(String username, String postId) {
-        List<ScheduledPost> posts = userScheduledPosts.get(username);
-        if (posts != null) {
-            posts.removeIf(post -> post.getPostId().equals(postId));
-            saveScheduledPosts();
-            System.out.println("🗑️ Scheduled post cancelled: " + postId);
+        ScheduledPost post = postsById.get(postId);
+        if (post == null || !post.getAuthor().equals(username)) {
+            System.out.println("❌ No scheduled post " + postId + " for " + username);
+            return;
+        }
+        if (postsById.remove(postId, post)) {
+            post.markCancelled();
+            if (post.releaseDeferral()) rateLimiter.released();
+            postsOf(username).remove(postId);
+            if (!post.isPosted()) dueQueue.remove(post);
+            commit(log.cancel(postId));
+            advanceRecurring(post);
+            CatchUp current = catchUp;
+            if (current != null) current.dropped(post);
         }
+        System.out.println("🗑️ Scheduled post cancelled: " + postId);
     }
     
     private void startScheduler() {
-        // Check for posts to publish every minute
-        scheduler.scheduleAtFixedRate(new TimerTask() {
-            @Override
-            public void run() {
-                checkAndPublishPosts();
-            }
-        }, 0, 60000); // Check every minute
+        // Sleeps until the next post is due instead of polling
+        scheduler = new Thread(this::dispatchLoop, "PostScheduler");
+        scheduler.setDaemon(true);
+        scheduler.start();
     }
     
-    private void checkAndPublishPosts() {
-        for (Map.Entry<String, List<ScheduledPost>> entry : userScheduledPosts.entrySet()) {
-            String username = entry.getKey();
-            List<ScheduledPost> posts = entry.getValue();
-            
-            for (ScheduledPost post : posts) {
-                if (post.isReadyToPost()) {
-                    publishPost(username, post);
-                    post.markAsPosted();
-                }
+    private void dispatchLoop() {
+        List<ScheduledPost> due = new ArrayList<>();
+        try {
+            while (dueQueue.awaitDue(due)) {
+                long started = System.nanoTime();
+                // Hands due posts to the publishing pool; never waits for a publish
+                dispatcher.dispatch(due);
+                metrics.recordTick(System.nanoTime() - started, due.size(), dueQueue.size());
+                due.clear();
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
-        saveScheduledPosts();
     }
     
-    private void publishPost(String username, ScheduledPost post) {
-        try {
-            // Simulate posting to the platform
-            System.out.println("\n🚀 AUTO-POSTING SCHEDULED CONTENT:");
-            System.out.println("👤 User: " + username);
-            System.out.println("📱 Platform: " + post.getPlatform());
-            System.out.println("📝 Content: " + post.getContent());
-            System.out.println("⏰ Posted at: " + LocalDateTime.now().format(FORMATTER));
-            System.out.println("----------------------------------------");
-            
-            // Log the posting activity
-            logPostActivity(username, post);
-            
-        } catch (Exception e) {
-            System.err.println("❌ Failed to publish scheduled post: " + e.getMessage());
+    // Runs on a publishing thread; concurrent commits share a flush in the log
+    private void onPublishResult(PublishingPool.PublishResult result) {
+        ScheduledPost post = result.post;
+        if (result.outcome == PublishingPool.Outcome.PUBLISHED) {
+            metrics.recordPublished(clock.millis() - post.getDueEpochMillis(), result.elapsedMillis);
+            post.markAsPosted(LocalDateTime.now(clock));
+            commit(log.published(post, archivePost(post)));
+            CatchUp current = catchUp;
+            if (current != null) current.published(post);
+            return;
+        }
+        boolean timedOut = result.outcome == PublishingPool.Outcome.TIMED_OUT;
+        String reason = timedOut
+            ? "timed out after " + result.elapsedMillis + " ms"
+            : String.valueOf(result.error.getMessage());
+        metrics.recordFailed(timedOut);
+        int attempts = post.recordFailedAttempt();
+        if (timedOut) {
+            // The hung publish may still reach the platform, so a retry could post it twice;
+            // held like a timed-out post found after a restart, until the user cancels it
+            post.markFailed(reason + "; it may already be on " + post.getPlatform() + ", not retried");
+            post.markOutcomeUnknown();
+            commit(log.unknownOutcome(post.getPostId()));
+            System.err.println("❓ Publishing scheduled post " + post.getPostId() + " " + reason
+                + "; holding it instead of retrying");
+            CatchUp current = catchUp;
+            if (current != null) current.failed(post);
+            return;
+        }
+        post.markFailed(reason);
+        if (attempts < maxAttempts && !post.isCancelled()) {
+            long backoff = retryBackoffMillis << Math.min(attempts - 1, 20);
+            post.retryAt(clock.millis() + backoff);
+            System.err.println("⚠️ Failed to publish scheduled post " + post.getPostId() + ": " + reason
+                + "; retrying in " + backoff / 1000 + " s (attempt " + (attempts + 1) + " of " + maxAttempts + ")");
+            // Before the add: the retry may be published and report back right away
+            CatchUp current = catchUp;
+            if (current != null) current.retrying(post);
+            dueQueue.add(post);
+            return;
         }
+        System.err.println("❌ Failed to publish scheduled post " + post.getPostId() + ": " + reason
+            + " (gave up after " + attempts + " attempts)");
+        CatchUp current = catchUp;
+        if (current != null) current.failed(post);
     }
     
-    private void logPostActivity(String username, ScheduledPost post) {
+    // Archived before PUBLISHED is logged, so a logged post is never missing from the archive; false if it stays active
+    private boolean archivePost(ScheduledPost post) {
         try {
-            File logDir = new File("profiles/logs");
-            if (!logDir.exists()) logDir.mkdirs();
-            
-            File logFile = new File(logDir, "post_activity.csv");
-            boolean isNewFile = !logFile.exists();
-            
-            try (BufferedWriter writer = new BufferedWriter(new FileWriter(logFile, true))) {
-                if (isNewFile) {
-                    writer.write("Timestamp,Username,Platform,Content,Type,PostId");
-                    writer.newLine();
-                }
-                
-                writer.write(String.format("%s,%s,%s,\"%s\",SCHEDULED,%s",
-                    LocalDateTime.now().format(FORMATTER),
-                    username,
-                    post.getPlatform(),
-                    post.getContent().replace("\"", "\"\""), // Escape quotes
-                    post.getPostId()));
-                writer.newLine();
-            }
+            long started = System.nanoTime();
+            archive.append(post);
+            metrics.recordArchive(System.nanoTime() - started);
+            postsById.remove(post.getPostId(), post);
+            Map<String, ScheduledPost> posts = userScheduledPosts.get(post.getAuthor());
+            if (posts != null) posts.remove(post.getPostId());
+            return true;
         } catch (IOException e) {
-            System.err.println("Failed to log post activity: " + e.getMessage());
+            // Stays in the active set as posted; the snapshot carries it and the next start archives it
+            System.err.println("Error archiving published post " + post.getPostId() + ": " + e.getMessage());
+            return false;
+        }
+    }
+    
+    private void publishPost(String username, ScheduledPost post) {
+        // Simulate posting to the platform; one println so concurrent publishes don't interleave
+        System.out.println("\n🚀 AUTO-POSTING SCHEDULED CONTENT:\n"
+            + "👤 User: " + username + "\n"
+            + "📱 Platform: " + post.getPlatform() + "\n"
+            + "📝 Content: " + post.getContent() + "\n"
+            + "⏰ Posted at: " + LocalDateTime.now(clock).format(FORMATTER) + "\n"
+            + "----------------------------------------");
+        
+        // Log the posting activity
+        logPostActivity(username, post);
+    }
+    
+    // Only enqueues; the activity log's writer thread formats and appends
+    private void logPostActivity(String username, ScheduledPost post) {
+        activityLog.log(new PostActivity(LocalDateTime.now(clock), username, post));
+    }
+    
+    private static class PostActivity {
+        final LocalDateTime timestamp;
+        final String username;
+        final ScheduledPost post;
+        
+        PostActivity(LocalDateTime timestamp, String username, ScheduledPost post) {
+            this.timestamp = timestamp;
+            this.username = username;
+            this.post = post;
+        }
+        
+        String toCsv() {
+            return String.format("%s,%s,%s,\"%s\",SCHEDULED,%s",
+                timestamp.format(FORMATTER),
+                username,
+                post.getPlatform(),
+                post.getContent().replace("\"", "\"\""), // Escape quotes
+                post.getPostId());
         }
     }
     
-    private void saveScheduledPosts() {
+    // Checkpoint snapshot: the whole state, written aside and renamed over the old file
+    private void saveScheduledPosts() throws IOException {
+        long started = System.nanoTime();
         try {
-            File dir = new File("profiles");
-            if (!dir.exists()) dir.mkdirs();
+            writeScheduledPosts();
+        } finally {
+            metrics.recordSnapshot(System.nanoTime() - started);
+        }
+    }
+    
+    private void writeScheduledPosts() throws IOException {
+        File dir = new File("profiles");
+        if (!dir.exists()) dir.mkdirs();
+        
+        File file = new File(SCHEDULED_POSTS_FILE);
+        File tmp = new File(SCHEDULED_POSTS_FILE + ".tmp");
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(tmp))) {
+            writer.write("Username,Content,ScheduledTime,Platform,Posted,PostId,RuleId,Outcome,PostedAt");
+            writer.newLine();
             
-            try (BufferedWriter writer = new BufferedWriter(new FileWriter(SCHEDULED_POSTS_FILE))) {
-                writer.write("Username,Content,ScheduledTime,Platform,Posted,PostId");
-                writer.newLine();
-                
-                for (Map.Entry<String, List<ScheduledPost>> entry : userScheduledPosts.entrySet()) {
-                    for (ScheduledPost post : entry.getValue()) {
-                        writer.write(String.format("%s,\"%s\",%s,%s,%b,%s",
-                            entry.getKey(),
-                            post.getContent().replace("\"", "\"\""),
-                            post.getFormattedScheduledTime(),
-                            post.getPlatform(),
-                            post.isPosted(),
-                            post.getPostId()));
+            // Built by hand rather than String.format: snapshots can hold millions of posts
+            StringBuilder line = new StringBuilder(128);
+            for (Map.Entry<String, Map<String, ScheduledPost>> entry : userScheduledPosts.entrySet()) {
+                Map<String, ScheduledPost> posts = entry.getValue();
+                synchronized (posts) {
+                    for (ScheduledPost post : posts.values()) {
+                        line.setLength(0);
+                        line.append(entry.getKey())
+                            .append(",\"").append(post.getContent().replace("\"", "\"\"")).append("\",")
+                            .append(post.getFormattedScheduledTime()).append(',')
+                            .append(post.getPlatform()).append(',')
+                            .append(post.isPosted()).append(',')
+                            .append(post.getPostId()).append(',')
+                            .append(post.getRuleId() != null ? post.getRuleId() : "").append(',')
+                            .append(post.isOutcomeUnknown() ? OUTCOME_UNKNOWN : "").append(',')
+                            .append(post.getFormattedPostedAt());
+                        writer.append(line);
                         writer.newLine();
                     }
                 }
             }
-        } catch (IOException e) {
-            System.err.println("Error saving scheduled posts: " + e.getMessage());
         }
+        
+        // Rules are written after the posts: an occurrence a rule has just recorded is then never missing
+        File rulesFile = new File(RECURRING_FILE);
+        File rulesTmp = new File(RECURRING_FILE + ".tmp");
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(rulesTmp))) {
+            writer.write("RuleId,Username,Platform,Rule,Start,End,MaxOccurrences,Occurrences,LastFire,Content");
+            writer.newLine();
+            for (RecurringSchedule schedule : recurringSchedules.values()) {
+                writer.write(schedule.toCsv());
+                writer.newLine();
+            }
+        }
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        Files.move(rulesTmp.toPath(), rulesFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
     }
     
+    // Snapshot first, then every logged change made since it was written
     private void loadScheduledPosts() {
+        Map<String, ScheduledPost> byId = new LinkedHashMap<>();
         try {
             File file = new File(SCHEDULED_POSTS_FILE);
-            if (!file.exists()) return;
-            
-            try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-                String line = reader.readLine(); // Skip header
-                while ((line = reader.readLine()) != null) {
-                    String[] parts = parseCSVLine(line);
-                    if (parts.length >= 6) {
-                        try {
-                            String username = parts[0];
-                            String content = parts[1];
-                            LocalDateTime scheduledTime = LocalDateTime.parse(parts[2], FORMATTER);
-                            String platform = parts[3];
-                            boolean posted = Boolean.parseBoolean(parts[4]);
-                            
-                            ScheduledPost post = new ScheduledPost(content, scheduledTime, platform, username);
-                            if (posted) post.markAsPosted();
-                            
-                            userScheduledPosts.computeIfAbsent(username, k -> new ArrayList<>()).add(post);
-                        } catch (DateTimeParseException e) {
-                            System.err.println("Error parsing scheduled post date: " + e.getMessage());
+            if (file.exists()) {
+                try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+                    String line = reader.readLine(); // Skip header
+                    while ((line = reader.readLine()) != null) {
+                        String[] parts = parseCSVLine(line);
+                        if (parts.length >= 6) {
+                            try {
+                                String username = parts[0];
+                                String content = parts[1];
+                                LocalDateTime scheduledTime = LocalDateTime.parse(parts[2], FORMATTER);
+                                String platform = parts[3];
+                                boolean posted = Boolean.parseBoolean(parts[4]);
+                                
+                                String ruleId = parts.length >= 7 && !parts[6].isEmpty() ? parts[6] : null;
+                                ScheduledPost post = new ScheduledPost(content, scheduledTime, platform, username, parts[5], ruleId);
+                                if (posted) post.markAsPosted(postedAt(parts, 8, scheduledTime));
+                                if (parts.length >= 8 && parts[7].equals(OUTCOME_UNKNOWN)) post.markOutcomeUnknown();
+                                byId.put(post.getPostId(), post);
+                            } catch (DateTimeParseException e) {
+                                System.err.println("Error parsing scheduled post date: " + e.getMessage());
+                            }
                         }
                     }
                 }
@@ -173,9 +576,178 @@ public class PostScheduler {
         } catch (IOException e) {
             System.err.println("Error loading scheduled posts: " + e.getMessage());
         }
+        loadRecurringSchedules();
+        
+        log.replay(record -> applyLogRecord(record, byId));
+        
+        PostIdGenerator ids = PostIdGenerator.getInstance();
+        List<ScheduledPost> published = new ArrayList<>();
+        List<ScheduledPost> overdue = new ArrayList<>();
+        int held = 0;
+        long now = clock.millis();
+        for (ScheduledPost post : byId.values()) {
+            ids.observe(post.getPostId());
+            if (post.isPosted()) {
+                published.add(post);
+            } else if (post.isOutcomeUnknown()) {
+                // Publishing it again could post it twice; it stays listed until the user cancels it
+                post.markFailed("publish timed out before a restart; it may already be on " + post.getPlatform());
+                index(post);
+                held++;
+            } else if (post.getDueEpochMillis() <= now) {
+                index(post);
+                overdue.add(post);
+            } else {
+                register(post);
+            }
+        }
+        if (held > 0) {
+            System.out.println("⚠️ " + held + " scheduled posts timed out while publishing before the last shutdown;"
+                + " they are not published again automatically");
+        }
+        reconcileRecurring();
+        startCatchUp(overdue, now);
+        // Published posts whose archiving failed move out now; logged so a crash before the
+        // next checkpoint does not archive them again
+        if (!published.isEmpty()) {
+            try {
+                archive.appendAll(published);
+                long sequence = 0;
+                for (ScheduledPost post : published) sequence = log.published(post, true);
+                commit(sequence);
+            } catch (IOException e) {
+                System.err.println("Error archiving published posts: " + e.getMessage());
+                published.forEach(this::register);
+            }
+        }
     }
     
-    private String[] parseCSVLine(String line) {
+    /**
+     * Applies the catch-up policy to posts that fell due while the application was down
+     * and releases the survivors oldest first, a bounded number at a time. Skipped posts
+     * are cancelled (and logged as such) so they do not come back on the next start.
+     */
+    private void startCatchUp(List<ScheduledPost> overdue, long now) {
+        if (overdue.isEmpty()) return;
+        CatchUpPolicy.Plan plan = catchUpPolicy.plan(overdue, now);
+        long sequence = 0;
+        for (List<ScheduledPost> skipped : Arrays.asList(plan.tooOld, plan.duplicates)) {
+            for (ScheduledPost post : skipped) {
+                post.markCancelled();
+                postsById.remove(post.getPostId(), post);
+                postsOf(post.getAuthor()).remove(post.getPostId());
+                sequence = log.cancel(post.getPostId());
+                advanceRecurring(post);
+            }
+        }
+        commit(sequence);
+        
+        System.out.println("⏪ Catching up on " + overdue.size() + " overdue posts (" + catchUpPolicy + "): "
+            + plan.publish.size() + " to publish, " + plan.tooOld.size() + " too old, "
+            + plan.duplicates.size() + " duplicates skipped");
+        catchUpLog = new AsyncActivityLog<>(new File(CATCH_UP_LOG_FILE), CatchUp.CSV_HEADER, CatchUp.Progress::toCsv);
+        catchUp = new CatchUp(plan.publish, plan.tooOld.size() + plan.duplicates.size(),
+            catchUpPolicy.getParallelism(), clock, dueQueue::add, this::reportCatchUp);
+        catchUp.start();
+    }
+    
+    private void reportCatchUp(CatchUp.Progress progress) {
+        catchUpLog.log(progress);
+        if (progress.isDone()) System.out.println("⏪ Catch-up finished: " + progress);
+    }
+    
+    // Null when nothing was overdue at start-up
+    public CatchUp.Progress getCatchUpProgress() {
+        CatchUp current = catchUp;
+        return current == null ? null : current.progress();
+    }
+    
+    private void loadRecurringSchedules() {
+        File file = new File(RECURRING_FILE);
+        if (!file.exists()) return;
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            String line = reader.readLine(); // Skip header
+            while ((line = reader.readLine()) != null) {
+                try {
+                    RecurringSchedule schedule = RecurringSchedule.fromCsv(parseCSVLine(line));
+                    recurringSchedules.put(schedule.getRuleId(), schedule);
+                } catch (IllegalArgumentException | DateTimeParseException e) {
+                    System.err.println("Skipping bad recurring schedule: " + e.getMessage());
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Error loading recurring schedules: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Links every rule to its queued occurrence after a restart, and lines up a new one for
+     * rules whose occurrence was lost, e.g. published just before the application went down.
+     */
+    private void reconcileRecurring() {
+        PostIdGenerator ids = PostIdGenerator.getInstance();
+        for (ScheduledPost post : postsById.values()) {
+            RecurringSchedule schedule = post.getRuleId() != null ? recurringSchedules.get(post.getRuleId()) : null;
+            if (schedule == null || post.isPosted() || post.isOutcomeUnknown()) continue;
+            String current = schedule.getPendingPostId();
+            ScheduledPost other = current != null ? postsById.get(current) : null;
+            if (other == null || other.getScheduledTime().isBefore(post.getScheduledTime())) {
+                schedule.setPendingPostId(post.getPostId());
+            }
+        }
+        for (RecurringSchedule schedule : new ArrayList<>(recurringSchedules.values())) {
+            ids.observe(schedule.getRuleId());
+            if (schedule.getPendingPostId() == null) materializeNext(schedule, LocalDateTime.now(clock));
+        }
+    }
+    
+    private void applyLogRecord(String[] record, Map<String, ScheduledPost> byId) {
+        try {
+            switch (SchedulerLog.Op.valueOf(record[0])) {
+                case SCHEDULE:
+                    // A torn last line is shorter than a full record and is dropped
+                    if (record.length >= 6 && !byId.containsKey(record[1])) {
+                        LocalDateTime scheduledTime = LocalDateTime.parse(record[3], FORMATTER);
+                        String ruleId = record.length >= 7 && !record[6].isEmpty() ? record[6] : null;
+                        byId.put(record[1], new ScheduledPost(record[5], scheduledTime, record[4], record[2], record[1], ruleId));
+                    }
+                    break;
+                case RULE:
+                    RecurringSchedule schedule = RecurringSchedule.fromCsv(Arrays.copyOfRange(record, 1, record.length));
+                    recurringSchedules.put(schedule.getRuleId(), schedule);
+                    break;
+                case RULE_END:
+                    if (record.length >= 2) recurringSchedules.remove(record[1]);
+                    break;
+                case CANCEL:
+                    if (record.length >= 2) byId.remove(record[1]);
+                    break;
+                case PUBLISHED:
+                    ScheduledPost published = record.length >= 2 ? byId.get(record[1]) : null;
+                    if (published == null) break;
+                    // Already in the archive: dropped, so it is not appended again. Records
+                    // written before the flag existed were archived first too.
+                    if (record.length < 4 || Boolean.parseBoolean(record[3])) {
+                        byId.remove(record[1]);
+                    } else {
+                        published.markAsPosted(postedAt(record, 2, published.getScheduledTime()));
+                    }
+                    break;
+                case UNKNOWN:
+                    if (record.length >= 2 && byId.containsKey(record[1])) byId.get(record[1]).markOutcomeUnknown();
+                    break;
+            }
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            System.err.println("Skipping bad scheduler log record: " + String.join(",", record));
+        }
+    }
+    
+    // Files written before the publish time was recorded fall back to the scheduled time, never to "now"
+    private static LocalDateTime postedAt(String[] parts, int index, LocalDateTime scheduledTime) {
+        return parts.length > index && !parts[index].isEmpty() ? LocalDateTime.parse(parts[index], FORMATTER) : scheduledTime;
+    }
+    
+    static String[] parseCSVLine(String line) {
         List<String> result = new ArrayList<>();
         boolean inQuotes = false;
         StringBuilder current = new StringBuilder();
@@ -202,35 +774,96 @@ public class PostScheduler {
     }
     
     public void displayScheduledPosts(String username) {
+        displayScheduledPosts(username, 1);
+    }
+    
+    /** Prints one page of the user's pending posts; returns the number of pages. */
+    public int displayScheduledPosts(String username, int page) {
         List<ScheduledPost> posts = getUserScheduledPosts(username);
+        posts.sort(Comparator.comparingLong(ScheduledPost::getDueEpochMillis));
         
         if (posts.isEmpty()) {
             System.out.println("📅 No scheduled posts found.");
-            return;
+            return 0;
         }
         
         System.out.println("\n📅 SCHEDULED POSTS");
-        System.out.println("========================================");
+        return printPage(posts, page);
+    }
+    
+    /**
+     * Prints one page of the user's published posts, from a single month or, when month
+     * is null, from all months newest first. Returns the number of pages.
+     */
+    public int displayArchivedPosts(String username, YearMonth month, int page) {
+        List<ScheduledPost> posts = new ArrayList<>();
+        if (month != null) {
+            posts.addAll(archive.query(username, month));
+        } else {
+            for (YearMonth archived : archive.months(username)) {
+                List<ScheduledPost> monthPosts = archive.query(username, archived);
+                Collections.reverse(monthPosts);
+                posts.addAll(monthPosts);
+            }
+        }
+        
+        if (posts.isEmpty()) {
+            System.out.println("🗄️ No published posts found" + (month != null ? " for " + month : "") + ".");
+            return 0;
+        }
+        
+        System.out.println("\n🗄️ PUBLISHED POSTS" + (month != null ? " (" + month + ")" : ""));
+        return printPage(posts, page);
+    }
+    
+    private int printPage(List<ScheduledPost> posts, int page) {
+        int pages = (posts.size() + PAGE_SIZE - 1) / PAGE_SIZE;
+        page = Math.max(1, Math.min(page, pages));
+        int from = (page - 1) * PAGE_SIZE;
+        int to = Math.min(posts.size(), from + PAGE_SIZE);
         
-        for (int i = 0; i < posts.size(); i++) {
+        System.out.println("========================================");
+        for (int i = from; i < to; i++) {
             ScheduledPost post = posts.get(i);
             System.out.printf("%d. %s [%s]\n", 
                 i + 1, 
                 post.getFormattedScheduledTime(), 
-                post.isPosted() ? "✅ POSTED" : "⏳ PENDING");
+                post.isPosted() ? "✅ POSTED" : post.isOutcomeUnknown() ? "❓ UNKNOWN"
+                    : post.getLastError() != null ? "❌ FAILED" : "⏳ PENDING");
             System.out.printf("   Platform: %s\n", post.getPlatform());
             System.out.printf("   Content: %s\n", 
                 post.getContent().length() > 60 ? 
                 post.getContent().substring(0, 60) + "..." : 
                 post.getContent());
             System.out.printf("   ID: %s\n", post.getPostId());
+            if (post.isPosted() && post.getPostedAt() != null) {
+                System.out.printf("   Posted at: %s\n", post.getPostedAt().format(FORMATTER));
+            } else if (post.getLastError() != null) {
+                System.out.printf("   Error: %s\n", post.getLastError());
+            }
             System.out.println();
         }
+        System.out.printf("Page %d of %d (%d posts)\n", page, pages, posts.size());
+        return pages;
     }
     
     public void shutdown() {
+        dueQueue.close();
         if (scheduler != null) {
-            scheduler.cancel();
+            try {
+                scheduler.join(5000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
         }
+        // Let in-flight publishes report so their results reach the log
+        publishers.shutdown(PublishingPool.DEFAULT_TIMEOUT_MILLIS);
+        log.shutdown();
+        archive.close();
+        activityLog.shutdown();
+        metricsDumper.shutdownNow();
+        dumpMetrics();
+        metricsLog.shutdown();
+        if (catchUpLog != null) catchUpLog.shutdown();
     }
 }
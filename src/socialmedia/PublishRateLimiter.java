@@ -0,0 +1,137 @@
+package socialmedia;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-platform and per-account token buckets for scheduled publishing.
+ * A post needs a token from its platform's bucket and from its account's bucket
+ * (author on that platform); reserve() returns when both will be available. Posts that
+ * have to wait are deferred by the scheduler and keep their due-time order.
+ */
+public class PublishRateLimiter {
+    private static final int PRUNE_ABOVE = 10000;
+    private static final int PRUNE_EVERY = 4096;
+
+    public static class Limit {
+        public final double ratePerSecond;
+        public final int burst;
+
+        public Limit(double ratePerSecond, int burst) {
+            this.ratePerSecond = ratePerSecond;
+            this.burst = burst;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%.2f/s burst %d", ratePerSecond, burst);
+        }
+    }
+
+    public static class ThrottleStats {
+        public final int queueDepth;      // posts waiting in the due queue, deferred ones included
+        public final long deferredNow;    // deferred posts not yet released
+        public final long deferralsTotal;
+        public final long admittedTotal;
+        public final long maxDelayMillis; // longest deferral handed out so far
+
+        ThrottleStats(int queueDepth, long deferredNow, long deferralsTotal, long admittedTotal, long maxDelayMillis) {
+            this.queueDepth = queueDepth;
+            this.deferredNow = deferredNow;
+            this.deferralsTotal = deferralsTotal;
+            this.admittedTotal = admittedTotal;
+            this.maxDelayMillis = maxDelayMillis;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("queue=%d deferred=%d deferrals=%d admitted=%d maxDelay=%dms",
+                queueDepth, deferredNow, deferralsTotal, admittedTotal, maxDelayMillis);
+        }
+    }
+
+    private final Map<String, Limit> platformLimits = new ConcurrentHashMap<>();
+    private final Map<String, TokenBucket> platformBuckets = new ConcurrentHashMap<>();
+    private final Map<String, TokenBucket> accountBuckets = new ConcurrentHashMap<>();
+    private volatile Limit defaultPlatformLimit = new Limit(10, 100);
+    private volatile Limit accountLimit = new Limit(0.1, 5); // a burst of 5, then one every 10 s
+
+    private final AtomicLong deferredNow = new AtomicLong();
+    private final AtomicLong deferrals = new AtomicLong();
+    private final AtomicLong admitted = new AtomicLong();
+    private final AtomicLong maxDelay = new AtomicLong();
+    private long reservations;
+
+    // A null limit (or a rate <= 0) switches limiting off; buckets are rebuilt on next use
+    public void setPlatformLimit(String platform, Limit limit) {
+        if (limit == null || limit.ratePerSecond <= 0) {
+            platformLimits.put(platform, new Limit(0, 0));
+        } else {
+            platformLimits.put(platform, limit);
+        }
+        platformBuckets.remove(platform);
+    }
+
+    public void setDefaultPlatformLimit(Limit limit) {
+        this.defaultPlatformLimit = limit;
+        platformBuckets.clear();
+    }
+
+    public void setAccountLimit(Limit limit) {
+        this.accountLimit = limit;
+        accountBuckets.clear();
+    }
+
+    /**
+     * Takes a token from each bucket the post draws on and returns the time the post may
+     * be published, which is {@code nowMillis} when it is within both limits.
+     * Only the dispatcher thread calls this.
+     */
+    public long reserve(ScheduledPost post, long nowMillis) {
+        if (++reservations % PRUNE_EVERY == 0 && accountBuckets.size() > PRUNE_ABOVE) {
+            pruneIdleAccounts(nowMillis);
+        }
+        long at = nowMillis;
+        TokenBucket platform = bucket(platformBuckets, post.getPlatform(), platformLimitFor(post.getPlatform()), nowMillis);
+        if (platform != null) at = Math.max(at, platform.reserve(nowMillis));
+        TokenBucket account = bucket(accountBuckets, post.getAuthor() + "@" + post.getPlatform(), accountLimit, nowMillis);
+        if (account != null) at = Math.max(at, account.reserve(nowMillis));
+
+        admitted.incrementAndGet();
+        if (at > nowMillis) {
+            deferrals.incrementAndGet();
+            deferredNow.incrementAndGet();
+            maxDelay.accumulateAndGet(at - nowMillis, Math::max);
+        }
+        return at;
+    }
+
+    // A deferred post came back round; it already holds its tokens
+    public void released() {
+        deferredNow.decrementAndGet();
+    }
+
+    private Limit platformLimitFor(String platform) {
+        return platformLimits.getOrDefault(platform, defaultPlatformLimit);
+    }
+
+    private static TokenBucket bucket(Map<String, TokenBucket> buckets, String key, Limit limit, long nowMillis) {
+        if (limit == null || limit.ratePerSecond <= 0) return null;
+        return buckets.computeIfAbsent(key, k -> new TokenBucket(limit.ratePerSecond, Math.max(1, limit.burst), nowMillis));
+    }
+
+    // A full bucket is the same as a fresh one, so idle accounts can be dropped
+    private void pruneIdleAccounts(long nowMillis) {
+        Iterator<TokenBucket> it = accountBuckets.values().iterator();
+        while (it.hasNext()) {
+            TokenBucket bucket = it.next();
+            if (bucket.available(nowMillis) >= bucket.getCapacity()) it.remove();
+        }
+    }
+
+    public ThrottleStats stats(int queueDepth) {
+        return new ThrottleStats(queueDepth, deferredNow.get(), deferrals.get(), admitted.get(), maxDelay.get());
+    }
+}
@@ -0,0 +1,208 @@
+package socialmedia;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Runs scheduled-post publishes off the scheduler thread.
+ * Every platform has its own lane with a concurrency cap; posts beyond the cap wait in
+ * the lane and start as running ones finish, so submit() never blocks. Each publish
+ * gets a deadline, and exactly one PublishResult per post goes to the result handler.
+ * Publishes run on virtual threads when the JVM has them (Java 21+), otherwise on a
+ * cached pool of daemon threads.
+ */
+public class PublishingPool {
+    public static final int DEFAULT_CONCURRENCY = 4;
+    public static final long DEFAULT_TIMEOUT_MILLIS = 30000;
+
+    public enum Outcome { PUBLISHED, FAILED, TIMED_OUT }
+
+    public static class PublishResult {
+        public final ScheduledPost post;
+        public final Outcome outcome;
+        public final long elapsedMillis;
+        public final Throwable error; // null unless FAILED
+
+        PublishResult(ScheduledPost post, Outcome outcome, long elapsedMillis, Throwable error) {
+            this.post = post;
+            this.outcome = outcome;
+            this.elapsedMillis = elapsedMillis;
+            this.error = error;
+        }
+    }
+
+    public interface Publisher {
+        void publish(ScheduledPost post) throws Exception;
+    }
+
+    private final Publisher publisher;
+    private final Consumer<PublishResult> resultHandler;
+    private final ExecutorService executor;
+    private final ScheduledThreadPoolExecutor watchdog;
+    private final Map<String, Lane> lanes = new ConcurrentHashMap<>();
+    private final Map<String, Integer> limits = new ConcurrentHashMap<>();
+    private final AtomicInteger outstanding = new AtomicInteger();
+    private final Object idle = new Object();
+
+    private volatile int defaultConcurrency = DEFAULT_CONCURRENCY;
+    private volatile long timeoutMillis = DEFAULT_TIMEOUT_MILLIS;
+
+    public PublishingPool(Publisher publisher, Consumer<PublishResult> resultHandler) {
+        this.publisher = publisher;
+        this.resultHandler = resultHandler;
+        this.executor = newPublishExecutor();
+        this.watchdog = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread t = new Thread(r, "PublishWatchdog");
+            t.setDaemon(true);
+            return t;
+        });
+        // Most publishes beat their deadline; don't keep their timers around
+        watchdog.setRemoveOnCancelPolicy(true);
+    }
+
+    // Looked up reflectively so the code still builds and runs on Java 17
+    private static ExecutorService newPublishExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            AtomicInteger threads = new AtomicInteger();
+            return Executors.newCachedThreadPool(r -> {
+                Thread t = new Thread(r, "PostPublisher-" + threads.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+
+    // Caps take effect as running publishes finish
+    public void setPlatformConcurrency(String platform, int maxConcurrent) {
+        limits.put(platform, Math.max(1, maxConcurrent));
+        Lane lane = lanes.get(platform);
+        if (lane != null) lane.drain();
+    }
+
+    public void setDefaultConcurrency(int maxConcurrent) { this.defaultConcurrency = Math.max(1, maxConcurrent); }
+    public void setTimeoutMillis(long timeoutMillis) { this.timeoutMillis = Math.max(1, timeoutMillis); }
+
+    public int getConcurrency(String platform) {
+        return limits.getOrDefault(platform, defaultConcurrency);
+    }
+
+    // Posts submitted but not yet reported
+    public int getOutstanding() {
+        return outstanding.get();
+    }
+
+    public void submit(ScheduledPost post) {
+        outstanding.incrementAndGet();
+        lanes.computeIfAbsent(post.getPlatform(), Lane::new).offer(post);
+    }
+
+    private class Lane {
+        private final String platform;
+        private final Queue<ScheduledPost> waiting = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger running = new AtomicInteger();
+
+        Lane(String platform) {
+            this.platform = platform;
+        }
+
+        void offer(ScheduledPost post) {
+            waiting.add(post);
+            drain();
+        }
+
+        // Called after every offer and every finish, so a freed slot is never missed
+        void drain() {
+            while (!waiting.isEmpty()) {
+                int current = running.get();
+                if (current >= getConcurrency(platform)) return;
+                if (!running.compareAndSet(current, current + 1)) continue;
+                ScheduledPost post = waiting.poll();
+                if (post == null) {
+                    running.decrementAndGet();
+                    continue;
+                }
+                start(post);
+            }
+        }
+
+        private void start(ScheduledPost post) {
+            Attempt attempt = new Attempt(post);
+            try {
+                attempt.task = executor.submit(attempt::run);
+            } catch (RejectedExecutionException e) {
+                attempt.report(Outcome.FAILED, e);
+                return;
+            }
+            attempt.timer = watchdog.schedule(() -> {
+                if (attempt.report(Outcome.TIMED_OUT, null)) attempt.task.cancel(true);
+            }, timeoutMillis, TimeUnit.MILLISECONDS);
+        }
+
+        private class Attempt {
+            private final ScheduledPost post;
+            private final long started = System.nanoTime();
+            private final AtomicBoolean reported = new AtomicBoolean();
+            private volatile Future<?> task;
+            private volatile ScheduledFuture<?> timer;
+
+            Attempt(ScheduledPost post) {
+                this.post = post;
+            }
+
+            void run() {
+                try {
+                    publisher.publish(post);
+                    report(Outcome.PUBLISHED, null);
+                } catch (Exception e) {
+                    report(Outcome.FAILED, e);
+                }
+            }
+
+            // First report wins; it also frees the slot, so a hung publish cannot hold its lane
+            boolean report(Outcome outcome, Throwable error) {
+                if (!reported.compareAndSet(false, true)) return false;
+                ScheduledFuture<?> timer = this.timer;
+                if (timer != null) timer.cancel(false);
+                try {
+                    resultHandler.accept(new PublishResult(post, outcome,
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started), error));
+                } catch (RuntimeException e) {
+                    System.err.println("Error handling publish result: " + e.getMessage());
+                } finally {
+                    running.decrementAndGet();
+                    drain();
+                    if (outstanding.decrementAndGet() == 0) {
+                        synchronized (idle) {
+                            idle.notifyAll();
+                        }
+                    }
+                }
+                return true;
+            }
+        }
+    }
+
+    /** Waits up to timeoutMillis for outstanding publishes to be reported, then stops the threads. */
+    public void shutdown(long timeoutMillis) {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        synchronized (idle) {
+            long remaining;
+            while (outstanding.get() > 0 && (remaining = deadline - System.currentTimeMillis()) > 0) {
+                try {
+                    idle.wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+        executor.shutdownNow();
+        watchdog.shutdownNow();
+    }
+}
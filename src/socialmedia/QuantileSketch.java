@@ -0,0 +1,201 @@
+package socialmedia;
+
+import java.util.Arrays;
+
+/**
+ * Merging t-digest for approximate quantiles of metric values.
+ * Values are buffered and periodically folded into weighted centroids; centroids
+ * near the tails are kept small, so p95/p99 stay accurate while the whole sketch
+ * holds at most a few times {@code compression} centroids regardless of the input size.
+ * Methods are synchronized because reading a quantile folds the buffer in.
+ */
+public class QuantileSketch {
+    public static final double DEFAULT_COMPRESSION = 100;
+
+    private final double compression;
+    private double[] means = new double[0];
+    private double[] weights = new double[0];
+    private int centroids;
+
+    private double[] bufferValues = new double[8];
+    private double[] bufferWeights = new double[8];
+    private int buffered;
+
+    private double totalWeight;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    public QuantileSketch() {
+        this(DEFAULT_COMPRESSION);
+    }
+
+    public QuantileSketch(double compression) {
+        if (compression < 10) {
+            throw new IllegalArgumentException("compression must be at least 10: " + compression);
+        }
+        this.compression = compression;
+    }
+
+    public synchronized void add(double value) {
+        add(value, 1);
+    }
+
+    private void add(double value, double weight) {
+        if (buffered == bufferValues.length) {
+            // The buffer grows with the data up to a bound, so small sketches stay small
+            if (buffered >= 5 * compression) {
+                compress();
+            } else {
+                bufferValues = Arrays.copyOf(bufferValues, buffered * 2);
+                bufferWeights = Arrays.copyOf(bufferWeights, buffered * 2);
+            }
+        }
+        bufferValues[buffered] = value;
+        bufferWeights[buffered] = weight;
+        buffered++;
+        totalWeight += weight;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    public void merge(QuantileSketch other) {
+        double[] otherMeans;
+        double[] otherWeights;
+        double otherMin;
+        double otherMax;
+        synchronized (other) {
+            other.compress();
+            otherMeans = Arrays.copyOf(other.means, other.centroids);
+            otherWeights = Arrays.copyOf(other.weights, other.centroids);
+            otherMin = other.min;
+            otherMax = other.max;
+        }
+        synchronized (this) {
+            for (int i = 0; i < otherMeans.length; i++) {
+                add(otherMeans[i], otherWeights[i]);
+            }
+            // Centroid means lie inside the other sketch's range; keep its exact extremes
+            min = Math.min(min, otherMin);
+            max = Math.max(max, otherMax);
+        }
+    }
+
+    private void compress() {
+        if (buffered == 0) return;
+
+        int count = centroids + buffered;
+        double[] allMeans = Arrays.copyOf(means, count);
+        double[] allWeights = Arrays.copyOf(weights, count);
+        System.arraycopy(bufferValues, 0, allMeans, centroids, buffered);
+        System.arraycopy(bufferWeights, 0, allWeights, centroids, buffered);
+        buffered = 0;
+
+        Integer[] order = new Integer[count];
+        for (int i = 0; i < count; i++) order[i] = i;
+        Arrays.sort(order, (a, b) -> Double.compare(allMeans[a], allMeans[b]));
+
+        double[] newMeans = new double[Math.min(count, (int) (2 * compression) + 8)];
+        double[] newWeights = new double[newMeans.length];
+        int out = 0;
+
+        double currentMean = allMeans[order[0]];
+        double currentWeight = allWeights[order[0]];
+        double weightSoFar = 0;
+        double weightLimit = totalWeight * inverseScale(scale(0) + 1);
+
+        for (int i = 1; i < count; i++) {
+            double mean = allMeans[order[i]];
+            double weight = allWeights[order[i]];
+            if (weightSoFar + currentWeight + weight <= weightLimit) {
+                currentWeight += weight;
+                currentMean += (mean - currentMean) * weight / currentWeight;
+            } else {
+                if (out == newMeans.length) {
+                    newMeans = Arrays.copyOf(newMeans, out * 2);
+                    newWeights = Arrays.copyOf(newWeights, out * 2);
+                }
+                newMeans[out] = currentMean;
+                newWeights[out] = currentWeight;
+                out++;
+                weightSoFar += currentWeight;
+                weightLimit = totalWeight * inverseScale(scale(weightSoFar / totalWeight) + 1);
+                currentMean = mean;
+                currentWeight = weight;
+            }
+        }
+        if (out == newMeans.length) {
+            newMeans = Arrays.copyOf(newMeans, out + 1);
+            newWeights = Arrays.copyOf(newWeights, out + 1);
+        }
+        newMeans[out] = currentMean;
+        newWeights[out] = currentWeight;
+        out++;
+
+        means = newMeans;
+        weights = newWeights;
+        centroids = out;
+    }
+
+    // k1 scale function: centroid size shrinks towards q = 0 and q = 1
+    private double scale(double q) {
+        return compression / (2 * Math.PI) * Math.asin(2 * q - 1);
+    }
+
+    private double inverseScale(double k) {
+        if (k >= compression / 4) return 1;
+        return (Math.sin(k * 2 * Math.PI / compression) + 1) / 2;
+    }
+
+    /**
+     * Approximate value at quantile q (0..1), interpolating between centroid centres.
+     * Returns NaN for an empty sketch.
+     */
+    public synchronized double quantile(double q) {
+        if (q < 0 || q > 1) throw new IllegalArgumentException("quantile must be between 0 and 1: " + q);
+        compress();
+        if (centroids == 0) return Double.NaN;
+        if (centroids == 1) return means[0];
+
+        double target = q * totalWeight;
+        // Between the extremes and the outermost centres; a singleton there is the extreme itself
+        if (target <= weights[0] / 2) {
+            return min + (means[0] - min) * target / (weights[0] / 2);
+        }
+        double cumulative = 0;
+        for (int i = 0; i < centroids - 1; i++) {
+            double leftCentre = cumulative + weights[i] / 2;
+            double rightCentre = cumulative + weights[i] + weights[i + 1] / 2;
+            if (target < rightCentre) {
+                double fraction = (target - leftCentre) / (rightCentre - leftCentre);
+                return means[i] + fraction * (means[i + 1] - means[i]);
+            }
+            cumulative += weights[i];
+        }
+        int last = centroids - 1;
+        double lastCentre = totalWeight - weights[last] / 2;
+        return means[last] + (max - means[last]) * Math.min(1, (target - lastCentre) / (weights[last] / 2));
+    }
+
+    public synchronized long getCount() { return Math.round(totalWeight); }
+    public synchronized double getMin() { return totalWeight == 0 ? Double.NaN : min; }
+    public synchronized double getMax() { return totalWeight == 0 ? Double.NaN : max; }
+
+    public synchronized int getCentroidCount() {
+        compress();
+        return centroids;
+    }
+
+    public synchronized QuantileSketch copy() {
+        QuantileSketch copy = new QuantileSketch(compression);
+        copy.means = Arrays.copyOf(means, centroids);
+        copy.weights = Arrays.copyOf(weights, centroids);
+        copy.centroids = centroids;
+        copy.bufferValues = Arrays.copyOf(bufferValues, Math.max(8, buffered));
+        copy.bufferWeights = Arrays.copyOf(bufferWeights, Math.max(8, buffered));
+        copy.buffered = buffered;
+        copy.totalWeight = totalWeight;
+        copy.min = min;
+        copy.max = max;
+        return copy;
+    }
+}
@@ -0,0 +1,253 @@
+package socialmedia;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.Locale;
+
+/**
+ * When a recurring schedule fires, at minute precision like the rest of the scheduler.
+ * Two forms are understood:
+ * <ul>
+ *   <li>cron expressions, "minute hour day-of-month month day-of-week",
+ *       e.g. {@code 0 9 * * MON-FRI} or {@code *&#47;30 8-18 * * *}</li>
+ *   <li>intervals, {@code every 3h} or {@code every 45m}, optionally
+ *       {@code between 09:00 and 17:00} (each day's first fire is at the window start)</li>
+ * </ul>
+ * next() only jumps across fields that do not match, so it never walks minute by minute.
+ */
+public abstract class RecurrenceRule {
+    private final String spec;
+
+    protected RecurrenceRule(String spec) {
+        this.spec = spec;
+    }
+
+    /**
+     * First fire time strictly after {@code after}, or null if there is none within
+     * a few years. {@code anchor} is where an unwindowed interval counts from.
+     */
+    public abstract LocalDateTime next(LocalDateTime after, LocalDateTime anchor);
+
+    public static RecurrenceRule parse(String spec) {
+        String trimmed = spec.trim().replaceAll("\\s+", " ");
+        if (trimmed.toLowerCase(Locale.ROOT).startsWith("every ")) {
+            return Interval.parseInterval(trimmed);
+        }
+        return Cron.parseCron(trimmed);
+    }
+
+    @Override
+    public String toString() {
+        return spec;
+    }
+
+    static class Cron extends RecurrenceRule {
+        private static final String[] DAY_NAMES = {"SUN", "MON", "TUE", "WED", "THU", "FRI", "SAT"};
+        private static final String[] MONTH_NAMES = {"JAN", "FEB", "MAR", "APR", "MAY", "JUN",
+            "JUL", "AUG", "SEP", "OCT", "NOV", "DEC"};
+        private static final int MAX_DAYS = 5 * 366;
+
+        private final long minutes;
+        private final long hours;
+        private final long daysOfMonth;
+        private final long months;
+        private final long daysOfWeek; // bit 0 = Sunday
+        private final boolean domRestricted;
+        private final boolean dowRestricted;
+
+        private Cron(String spec, long minutes, long hours, long daysOfMonth, long months, long daysOfWeek,
+                     boolean domRestricted, boolean dowRestricted) {
+            super(spec);
+            this.minutes = minutes;
+            this.hours = hours;
+            this.daysOfMonth = daysOfMonth;
+            this.months = months;
+            this.daysOfWeek = daysOfWeek;
+            this.domRestricted = domRestricted;
+            this.dowRestricted = dowRestricted;
+        }
+
+        static Cron parseCron(String spec) {
+            String[] fields = spec.split(" ");
+            if (fields.length != 5) {
+                throw new IllegalArgumentException("Cron rule needs 5 fields (minute hour day month weekday): " + spec);
+            }
+            long dow = parseField(fields[4], 0, 7, DAY_NAMES, 0);
+            if ((dow & (1L << 7)) != 0) dow = (dow | 1) & ~(1L << 7); // 7 is Sunday too
+            return new Cron(spec,
+                parseField(fields[0], 0, 59, null, 0),
+                parseField(fields[1], 0, 23, null, 0),
+                parseField(fields[2], 1, 31, null, 0),
+                parseField(fields[3], 1, 12, MONTH_NAMES, 1),
+                dow,
+                !fields[2].equals("*"),
+                !fields[4].equals("*"));
+        }
+
+        // Bit i set when value i matches; supports *, lists, ranges and /steps
+        private static long parseField(String field, int min, int max, String[] names, int nameBase) {
+            long bits = 0;
+            for (String part : field.split(",")) {
+                int step = 1;
+                int slash = part.indexOf('/');
+                if (slash >= 0) {
+                    step = Integer.parseInt(part.substring(slash + 1));
+                    part = part.substring(0, slash);
+                    if (step < 1) throw new IllegalArgumentException("Bad step in cron field: " + field);
+                }
+                int from;
+                int to;
+                if (part.equals("*")) {
+                    from = min;
+                    to = max;
+                } else {
+                    int dash = part.indexOf('-');
+                    from = value(dash >= 0 ? part.substring(0, dash) : part, names, nameBase);
+                    to = dash >= 0 ? value(part.substring(dash + 1), names, nameBase) : (slash >= 0 ? max : from);
+                }
+                if (from < min || to > max || from > to) {
+                    throw new IllegalArgumentException("Cron field out of range " + min + "-" + max + ": " + field);
+                }
+                for (int v = from; v <= to; v += step) {
+                    bits |= 1L << v;
+                }
+            }
+            return bits;
+        }
+
+        private static int value(String text, String[] names, int nameBase) {
+            if (names != null) {
+                for (int i = 0; i < names.length; i++) {
+                    if (names[i].equalsIgnoreCase(text)) return i + nameBase;
+                }
+            }
+            try {
+                return Integer.parseInt(text);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Bad cron value: " + text);
+            }
+        }
+
+        // Smallest set bit at or above from, or -1
+        private static int nextBit(long bits, int from) {
+            if (from > 63) return -1;
+            long masked = bits & (-1L << from);
+            return masked == 0 ? -1 : Long.numberOfTrailingZeros(masked);
+        }
+
+        private boolean dayMatches(LocalDate date) {
+            boolean dom = (daysOfMonth & (1L << date.getDayOfMonth())) != 0;
+            boolean dow = (daysOfWeek & (1L << (date.getDayOfWeek().getValue() % 7))) != 0;
+            // Standard cron: when both are restricted, either one may match
+            if (domRestricted && dowRestricted) return dom || dow;
+            return dom && dow;
+        }
+
+        @Override
+        public LocalDateTime next(LocalDateTime after, LocalDateTime anchor) {
+            LocalDateTime t = after.truncatedTo(ChronoUnit.MINUTES).plusMinutes(1);
+            LocalDate limit = t.toLocalDate().plusDays(MAX_DAYS);
+            while (t.toLocalDate().isBefore(limit)) {
+                if ((months & (1L << t.getMonthValue())) == 0) {
+                    int month = nextBit(months, t.getMonthValue() + 1);
+                    t = month < 0
+                        ? LocalDateTime.of(t.getYear() + 1, nextBit(months, 1), 1, 0, 0)
+                        : LocalDateTime.of(t.getYear(), month, 1, 0, 0);
+                    continue;
+                }
+                if (!dayMatches(t.toLocalDate())) {
+                    t = t.toLocalDate().plusDays(1).atStartOfDay();
+                    continue;
+                }
+                int hour = nextBit(hours, t.getHour());
+                if (hour < 0) {
+                    t = t.toLocalDate().plusDays(1).atStartOfDay();
+                    continue;
+                }
+                if (hour != t.getHour()) {
+                    t = t.toLocalDate().atTime(hour, 0);
+                }
+                int minute = nextBit(minutes, t.getMinute());
+                if (minute < 0) {
+                    t = t.truncatedTo(ChronoUnit.HOURS).plusHours(1);
+                    continue;
+                }
+                return t.withMinute(minute);
+            }
+            return null;
+        }
+    }
+
+    static class Interval extends RecurrenceRule {
+        private final long stepMinutes;
+        private final LocalTime windowStart; // null when the interval runs around the clock
+        private final LocalTime windowEnd;
+
+        private Interval(String spec, long stepMinutes, LocalTime windowStart, LocalTime windowEnd) {
+            super(spec);
+            this.stepMinutes = stepMinutes;
+            this.windowStart = windowStart;
+            this.windowEnd = windowEnd;
+        }
+
+        // "every 3h", "every 90m", "every 2h between 09:00 and 17:00"
+        static Interval parseInterval(String spec) {
+            String[] words = spec.toLowerCase(Locale.ROOT).split(" ");
+            if (words.length != 2 && !(words.length == 6 && words[2].equals("between") && words[4].equals("and"))) {
+                throw new IllegalArgumentException("Expected 'every <N>h|m [between HH:mm and HH:mm]': " + spec);
+            }
+            String amount = words[1];
+            long step;
+            try {
+                long n = Long.parseLong(amount.substring(0, amount.length() - 1));
+                char unit = amount.charAt(amount.length() - 1);
+                if (unit == 'h') {
+                    step = n * 60;
+                } else if (unit == 'm') {
+                    step = n;
+                } else {
+                    throw new IllegalArgumentException("Interval unit must be h or m: " + spec);
+                }
+            } catch (NumberFormatException | StringIndexOutOfBoundsException e) {
+                throw new IllegalArgumentException("Bad interval: " + spec);
+            }
+            if (step < 1) throw new IllegalArgumentException("Interval must be at least a minute: " + spec);
+
+            if (words.length == 2) return new Interval(spec, step, null, null);
+            LocalTime start = LocalTime.parse(words[3]);
+            LocalTime end = LocalTime.parse(words[5]);
+            if (end.isBefore(start)) {
+                throw new IllegalArgumentException("Window must not cross midnight: " + spec);
+            }
+            return new Interval(spec, step, start, end);
+        }
+
+        @Override
+        public LocalDateTime next(LocalDateTime after, LocalDateTime anchor) {
+            LocalDateTime t = after.truncatedTo(ChronoUnit.MINUTES);
+            if (windowStart == null) {
+                LocalDateTime base = anchor.truncatedTo(ChronoUnit.MINUTES);
+                if (t.isBefore(base)) return base;
+                long elapsed = minutesBetween(base, t);
+                return base.plusMinutes((elapsed / stepMinutes + 1) * stepMinutes);
+            }
+            LocalDate day = t.toLocalDate();
+            LocalDateTime open = day.atTime(windowStart);
+            if (t.isBefore(open)) return open;
+            long elapsed = minutesBetween(open, t);
+            LocalDateTime candidate = open.plusMinutes((elapsed / stepMinutes + 1) * stepMinutes);
+            if (!candidate.toLocalTime().isAfter(windowEnd) && candidate.toLocalDate().equals(day)) {
+                return candidate;
+            }
+            return day.plusDays(1).atTime(windowStart);
+        }
+
+        // Plain arithmetic on local times; Duration.between is far slower on the hot path
+        private static long minutesBetween(LocalDateTime from, LocalDateTime to) {
+            return (to.toEpochSecond(ZoneOffset.UTC) - from.toEpochSecond(ZoneOffset.UTC)) / 60;
+        }
+    }
+}
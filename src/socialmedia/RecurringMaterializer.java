@@ -0,0 +1,65 @@
+package socialmedia;
+
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Lines up the occurrences of recurring schedules: each registered rule has at most one
+ * occurrence queued, and the next one is created when it comes due or is withdrawn.
+ * PostScheduler logs what happens through the listener; SchedulerSimulation only queues
+ * the posts, so the simulation exercises this exact code.
+ */
+public class RecurringMaterializer {
+    /**
+     * Called with the schedule's lock held; each returns the log sequence number the
+     * caller commits once the lock is released, or 0 when nothing was logged.
+     */
+    public interface Listener {
+        long materialized(RecurringSchedule schedule, ScheduledPost occurrence);
+        long ended(RecurringSchedule schedule);
+    }
+
+    private final Clock clock;
+    private final Map<String, RecurringSchedule> schedules;
+    private final Supplier<String> postIds;
+    private final Listener listener;
+
+    public RecurringMaterializer(Clock clock, Map<String, RecurringSchedule> schedules,
+                                 Supplier<String> postIds, Listener listener) {
+        this.clock = clock;
+        this.schedules = schedules;
+        this.postIds = postIds;
+        this.listener = listener;
+    }
+
+    /**
+     * Creates the schedule's next occurrence after {@code notBefore}, or ends the schedule
+     * when there is none. A schedule no longer registered is left alone.
+     */
+    public long materializeNext(RecurringSchedule schedule, LocalDateTime notBefore) {
+        synchronized (schedule) {
+            if (schedules.get(schedule.getRuleId()) != schedule) return 0;
+            LocalDateTime next = schedule.nextFire(notBefore);
+            if (next == null) {
+                schedules.remove(schedule.getRuleId(), schedule);
+                schedule.setPendingPostId(null);
+                return listener.ended(schedule);
+            }
+            ScheduledPost post = new ScheduledPost(schedule.getContent(), next, schedule.getPlatform(),
+                schedule.getAuthor(), postIds.get(), schedule.getRuleId());
+            schedule.recordOccurrence(next);
+            schedule.setPendingPostId(post.getPostId());
+            return listener.materialized(schedule, post);
+        }
+    }
+
+    // An occurrence has fired or been withdrawn; line up the one after it
+    public long advance(ScheduledPost occurrence) {
+        if (occurrence.getRuleId() == null) return 0;
+        RecurringSchedule schedule = schedules.get(occurrence.getRuleId());
+        if (schedule == null || !occurrence.getPostId().equals(schedule.getPendingPostId())) return 0;
+        return materializeNext(schedule, LocalDateTime.now(clock));
+    }
+}
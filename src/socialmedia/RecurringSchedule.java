@@ -0,0 +1,118 @@
+package socialmedia;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * A post that repeats by a RecurrenceRule.
+ * The schedule is stored once; the scheduler keeps only its next occurrence in the
+ * due queue as an ordinary ScheduledPost carrying the rule ID, and materializes the
+ * following one when that occurrence fires.
+ */
+public class RecurringSchedule {
+    private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+
+    private final String ruleId;
+    private final String author;
+    private final String content;
+    private final String platform;
+    private final RecurrenceRule rule;
+    private final LocalDateTime start;
+    private final LocalDateTime beforeStart; // the start itself is a valid first occurrence
+    private final LocalDateTime end;      // null for no end date
+    private final int maxOccurrences;     // 0 for no limit
+    private int occurrences;
+    private LocalDateTime lastFire;       // latest materialized occurrence, null before the first
+    private volatile String pendingPostId; // the occurrence currently in the queue
+
+    public RecurringSchedule(String ruleId, String author, String content, String platform, RecurrenceRule rule,
+                             LocalDateTime start, LocalDateTime end, int maxOccurrences) {
+        this.ruleId = ruleId;
+        this.author = author;
+        this.content = content;
+        this.platform = platform;
+        this.rule = rule;
+        this.start = start;
+        this.beforeStart = start.minusMinutes(1);
+        this.end = end;
+        this.maxOccurrences = Math.max(0, maxOccurrences);
+    }
+
+    /**
+     * Next occurrence strictly after both the last one and {@code notBefore}, or null once
+     * the end date or the occurrence limit is reached. Occurrences that fall before
+     * notBefore (e.g. while the application was down) are skipped, not counted.
+     */
+    public synchronized LocalDateTime nextFire(LocalDateTime notBefore) {
+        if (maxOccurrences > 0 && occurrences >= maxOccurrences) return null;
+        LocalDateTime after = beforeStart;
+        if (lastFire != null && lastFire.isAfter(after)) after = lastFire;
+        if (notBefore != null && notBefore.isAfter(after)) after = notBefore;
+
+        LocalDateTime next = rule.next(after, start);
+        if (next == null || (end != null && next.isAfter(end))) return null;
+        return next;
+    }
+
+    public synchronized void recordOccurrence(LocalDateTime fireTime) {
+        occurrences++;
+        if (lastFire == null || fireTime.isAfter(lastFire)) lastFire = fireTime;
+    }
+
+    // Restores the counters from a snapshot or log record
+    synchronized void restore(int occurrences, LocalDateTime lastFire) {
+        this.occurrences = occurrences;
+        this.lastFire = lastFire;
+    }
+
+    public synchronized boolean isExhausted() {
+        return nextFire(null) == null;
+    }
+
+    public String getRuleId() { return ruleId; }
+    public String getAuthor() { return author; }
+    public String getContent() { return content; }
+    public String getPlatform() { return platform; }
+    public RecurrenceRule getRule() { return rule; }
+    public LocalDateTime getStart() { return start; }
+    public LocalDateTime getEnd() { return end; }
+    public int getMaxOccurrences() { return maxOccurrences; }
+    public synchronized int getOccurrences() { return occurrences; }
+    public synchronized LocalDateTime getLastFire() { return lastFire; }
+    public String getPendingPostId() { return pendingPostId; }
+    void setPendingPostId(String pendingPostId) { this.pendingPostId = pendingPostId; }
+
+    // RuleId,Username,Platform,Rule,Start,End,MaxOccurrences,Occurrences,LastFire,Content
+    synchronized String toCsv() {
+        return String.format("%s,%s,%s,\"%s\",%s,%s,%d,%d,%s,\"%s\"",
+            ruleId,
+            author,
+            platform,
+            rule.toString().replace("\"", "\"\""),
+            start.format(FORMATTER),
+            end != null ? end.format(FORMATTER) : "",
+            maxOccurrences,
+            occurrences,
+            lastFire != null ? lastFire.format(FORMATTER) : "",
+            content.replace("\"", "\"\""));
+    }
+
+    // Inverse of toCsv; throws IllegalArgumentException (or a DateTimeParseException) on bad input
+    static RecurringSchedule fromCsv(String[] parts) {
+        if (parts.length < 10) throw new IllegalArgumentException("Recurring schedule needs 10 fields");
+        RecurringSchedule schedule = new RecurringSchedule(parts[0], parts[1], parts[9], parts[2],
+            RecurrenceRule.parse(parts[3]),
+            LocalDateTime.parse(parts[4], FORMATTER),
+            parts[5].isEmpty() ? null : LocalDateTime.parse(parts[5], FORMATTER),
+            Integer.parseInt(parts[6]));
+        schedule.restore(Integer.parseInt(parts[7]), parts[8].isEmpty() ? null : LocalDateTime.parse(parts[8], FORMATTER));
+        return schedule;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("RecurringSchedule{id='%s', rule='%s', platform='%s', occurrences=%d%s}",
+            ruleId, rule, platform, getOccurrences(),
+            maxOccurrences > 0 ? "/" + maxOccurrences : "");
+    }
+}
@@ -0,0 +1,47 @@
+package socialmedia;
+
+/**
+ * How long analytics points are kept at each resolution.
+ * Points younger than the raw period are kept as recorded, points younger than the
+ * hourly period keep one point per hour, and anything older keeps one point per day.
+ * Metrics are running totals (followers, likes, ...), so a bucket keeps its last sample.
+ */
+public class RetentionPolicy {
+    private static final long DAY = 86400;
+
+    private final int rawDays;
+    private final int hourlyDays;
+
+    public RetentionPolicy(int rawDays, int hourlyDays) {
+        if (rawDays < 1 || hourlyDays < rawDays) {
+            throw new IllegalArgumentException("Need 1 <= rawDays <= hourlyDays, got " + rawDays + " and " + hourlyDays);
+        }
+        this.rawDays = rawDays;
+        this.hourlyDays = hourlyDays;
+    }
+
+    // Raw for 7 days, hourly for 90 days, daily forever
+    public static RetentionPolicy defaults() {
+        return new RetentionPolicy(7, 90);
+    }
+
+    public boolean isRaw(long epochSecond, long now) {
+        return epochSecond > now - rawDays * DAY;
+    }
+
+    // Start of the bucket a non-raw point is folded into
+    public long bucketOf(long epochSecond, long now) {
+        if (epochSecond > now - hourlyDays * DAY) {
+            return MetricRollup.Granularity.HOUR.floor(epochSecond);
+        }
+        return MetricRollup.Granularity.DAY.floor(epochSecond);
+    }
+
+    public int getRawDays() { return rawDays; }
+    public int getHourlyDays() { return hourlyDays; }
+
+    @Override
+    public String toString() {
+        return "raw " + rawDays + "d, hourly " + hourlyDays + "d, daily after";
+    }
+}
@@ -0,0 +1,68 @@
+package socialmedia;
+
+/**
+ * Aggregate of the points that fall into one time bucket of a series.
+ * first/last follow timestamps rather than arrival order, so out-of-order
+ * points still produce the right bucket boundaries.
+ */
+public class RollupBucket {
+    long firstTime;
+    int first;
+    long lastTime;
+    int last;
+    int min = Integer.MAX_VALUE;
+    int max = Integer.MIN_VALUE;
+    long sum;
+    long count;
+    
+    public void add(long epochSecond, int value) {
+        if (count == 0 || epochSecond < firstTime) {
+            firstTime = epochSecond;
+            first = value;
+        }
+        if (count == 0 || epochSecond >= lastTime) {
+            lastTime = epochSecond;
+            last = value;
+        }
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+        sum += value;
+        count++;
+    }
+    
+    // Folds another bucket into this one; buckets may be merged in any order
+    public void merge(RollupBucket other) {
+        merge(other.firstTime, other.first, other.lastTime, other.last,
+            other.min, other.max, other.sum, other.count);
+    }
+    
+    void merge(long otherFirstTime, int otherFirst, long otherLastTime, int otherLast,
+               int otherMin, int otherMax, long otherSum, long otherCount) {
+        if (otherCount == 0) return;
+        if (count == 0 || otherFirstTime < firstTime) {
+            firstTime = otherFirstTime;
+            first = otherFirst;
+        }
+        if (count == 0 || otherLastTime >= lastTime) {
+            lastTime = otherLastTime;
+            last = otherLast;
+        }
+        min = Math.min(min, otherMin);
+        max = Math.max(max, otherMax);
+        sum += otherSum;
+        count += otherCount;
+    }
+    
+    public long getFirstTime() { return firstTime; }
+    public int getFirst() { return first; }
+    public long getLastTime() { return lastTime; }
+    public int getLast() { return last; }
+    public int getMin() { return min; }
+    public int getMax() { return max; }
+    public long getSum() { return sum; }
+    public long getCount() { return count; }
+    
+    public double getAverage() {
+        return count == 0 ? 0 : (double) sum / count;
+    }
+}
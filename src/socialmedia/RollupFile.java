@@ -0,0 +1,131 @@
+package socialmedia;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Map;
+
+/**
+ * Persists the rollup buckets of an AnalyticsStore next to the raw analytics log.
+ * The first line records how many raw rows the snapshot covers and which base files
+ * they came from, so loading only has to fold the rows recorded after it.
+ * An empty bucket (Count 0) marks where a level's retained buckets begin.
+ */
+public class RollupFile {
+    private static final String HEADER = "Username,Platform,MetricType,Granularity,BucketStart,FirstTime,First,LastTime,Last,Min,Max,Sum,Count";
+    private static final String ROWS_PREFIX = "# rows=";
+    private static final String SOURCES_PREFIX = " sources=";
+    private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+    
+    private final File file;
+    
+    public RollupFile(String path) {
+        this.file = new File(path);
+    }
+    
+    public void save(AnalyticsStore store, long coveredRows, String sources) {
+        try {
+            File dir = file.getAbsoluteFile().getParentFile();
+            if (dir != null && !dir.exists()) dir.mkdirs();
+            
+            File tmp = new File(file.getPath() + ".tmp");
+            try (BufferedWriter writer = new BufferedWriter(new FileWriter(tmp))) {
+                writer.write(ROWS_PREFIX + coveredRows + SOURCES_PREFIX + sources);
+                writer.newLine();
+                writer.write(HEADER);
+                writer.newLine();
+                
+                for (String username : store.usernames()) {
+                    for (Map.Entry<String, Map<String, MetricSeries>> platformEntry : store.getUserSeries(username).entrySet()) {
+                        for (Map.Entry<String, MetricSeries> metricEntry : platformEntry.getValue().entrySet()) {
+                            MetricRollup rollup = metricEntry.getValue().getRollup();
+                            for (MetricRollup.Granularity granularity : MetricRollup.Granularity.values()) {
+                                RollupLevel level = rollup.buckets(granularity);
+                                if (level.getRetainedFrom() != Long.MIN_VALUE) {
+                                    writer.write(formatRow(username, platformEntry.getKey(), metricEntry.getKey(),
+                                        granularity, level.getRetainedFrom(), new RollupBucket()));
+                                    writer.newLine();
+                                }
+                                for (int i = 0; i < level.size(); i++) {
+                                    writer.write(formatRow(username, platformEntry.getKey(), metricEntry.getKey(),
+                                        granularity, level.startAt(i), level.bucketAt(i)));
+                                    writer.newLine();
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println("Error saving analytics rollups: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Restores the snapshot into the store's series and returns the number of raw rows it
+     * covers, 0 when there is no snapshot, or -1 when it cannot be used and rollups must
+     * be rebuilt (e.g. a compaction reordered the base files since it was written).
+     */
+    public long load(AnalyticsStore store, String sources) {
+        if (!file.exists()) return 0;
+        
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            String first = reader.readLine();
+            if (first == null || !first.startsWith(ROWS_PREFIX)) return 0;
+            int sourcesAt = first.indexOf(SOURCES_PREFIX);
+            if (sourcesAt < 0 || !first.substring(sourcesAt + SOURCES_PREFIX.length()).equals(sources)) return -1;
+            long coveredRows = Long.parseLong(first.substring(ROWS_PREFIX.length(), sourcesAt).trim());
+            
+            String line = reader.readLine(); // Skip header
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.split(",");
+                if (parts.length < 13) continue;
+                
+                RollupBucket bucket = new RollupBucket();
+                bucket.firstTime = parseTime(parts[5]);
+                bucket.first = Integer.parseInt(parts[6]);
+                bucket.lastTime = parseTime(parts[7]);
+                bucket.last = Integer.parseInt(parts[8]);
+                bucket.min = Integer.parseInt(parts[9]);
+                bucket.max = Integer.parseInt(parts[10]);
+                bucket.sum = Long.parseLong(parts[11]);
+                bucket.count = Long.parseLong(parts[12]);
+                
+                store.getOrCreateSeries(parts[0], parts[1], parts[2]).getRollup()
+                    .putBucket(MetricRollup.Granularity.valueOf(parts[3]), parseTime(parts[4]), bucket);
+            }
+            // Files from before the minute horizon hold every minute bucket ever recorded
+            for (String username : store.usernames()) {
+                for (Map<String, MetricSeries> metrics : store.getUserSeries(username).values()) {
+                    for (MetricSeries series : metrics.values()) {
+                        series.getRollup().trimMinutes();
+                    }
+                }
+            }
+            return coveredRows;
+        } catch (Exception e) {
+            System.err.println("Error loading analytics rollups, rebuilding: " + e.getMessage());
+            return -1;
+        }
+    }
+    
+    private static String formatRow(String username, String platform, String metricType,
+                                    MetricRollup.Granularity granularity, long bucketStart, RollupBucket bucket) {
+        return username + ',' + platform + ',' + metricType + ',' + granularity + ','
+            + formatTime(bucketStart) + ','
+            + formatTime(bucket.firstTime) + ',' + bucket.first + ','
+            + formatTime(bucket.lastTime) + ',' + bucket.last + ','
+            + bucket.min + ',' + bucket.max + ',' + bucket.sum + ',' + bucket.count;
+    }
+    
+    private static String formatTime(long epochSecond) {
+        return MetricSeries.toLocalDateTime(epochSecond).format(FORMATTER);
+    }
+    
+    private static long parseTime(String text) {
+        return MetricSeries.toEpochSecond(LocalDateTime.parse(text, FORMATTER));
+    }
+}
@@ -0,0 +1,255 @@
+package socialmedia;
+
+import java.util.Arrays;
+
+/**
+ * Rollup buckets of one granularity, stored column-wise and sorted by bucket start.
+ * Points usually land in the newest bucket, which is checked before any search.
+ * Buckets before the retained start have been dropped, and points there are ignored.
+ */
+public class RollupLevel {
+    private static final int INITIAL_CAPACITY = 8;
+    
+    private final MetricRollup.Granularity granularity;
+    private long[] starts = new long[INITIAL_CAPACITY];
+    private long[] firstTimes = new long[INITIAL_CAPACITY];
+    private int[] firsts = new int[INITIAL_CAPACITY];
+    private long[] lastTimes = new long[INITIAL_CAPACITY];
+    private int[] lasts = new int[INITIAL_CAPACITY];
+    private int[] mins = new int[INITIAL_CAPACITY];
+    private int[] maxes = new int[INITIAL_CAPACITY];
+    private long[] sums = new long[INITIAL_CAPACITY];
+    private long[] counts = new long[INITIAL_CAPACITY];
+    private int size;
+    private long retainedFrom = Long.MIN_VALUE;
+    
+    public RollupLevel(MetricRollup.Granularity granularity) {
+        this(granularity, INITIAL_CAPACITY);
+    }
+    
+    private RollupLevel(MetricRollup.Granularity granularity, int capacity) {
+        this.granularity = granularity;
+        ensureCapacity(capacity);
+    }
+    
+    public void add(long epochSecond, int value) {
+        if (granularity.floor(epochSecond) < retainedFrom) return;
+        accumulate(bucketIndex(granularity.floor(epochSecond)), epochSecond, value);
+    }
+    
+    // True when a point at epochSecond would land in the newest bucket or after it
+    public boolean isInOrder(long epochSecond) {
+        return size == 0 || granularity.floor(epochSecond) >= starts[size - 1];
+    }
+    
+    /**
+     * Folds a batch of points into the buckets in one linear merge.
+     * order lists indices into times/values sorted by time, ties in arrival order.
+     */
+    public void addSorted(long[] times, int[] values, int[] order, int count) {
+        int capacity = size + count;
+        RollupLevel merged = new RollupLevel(granularity, capacity);
+        int existing = 0;
+        for (int k = 0; k < count; k++) {
+            long epochSecond = times[order[k]];
+            long bucketStart = granularity.floor(epochSecond);
+            if (bucketStart < retainedFrom) continue;
+            while (existing < size && starts[existing] <= bucketStart) {
+                merged.appendBucket(this, existing++);
+            }
+            if (merged.size == 0 || merged.starts[merged.size - 1] != bucketStart) {
+                merged.appendEmpty(bucketStart);
+            }
+            merged.accumulate(merged.size - 1, epochSecond, values[order[k]]);
+        }
+        while (existing < size) {
+            merged.appendBucket(this, existing++);
+        }
+        
+        starts = merged.starts;
+        firstTimes = merged.firstTimes;
+        firsts = merged.firsts;
+        lastTimes = merged.lastTimes;
+        lasts = merged.lasts;
+        mins = merged.mins;
+        maxes = merged.maxes;
+        sums = merged.sums;
+        counts = merged.counts;
+        size = merged.size;
+    }
+    
+    private void appendEmpty(long bucketStart) {
+        ensureCapacity(size + 1);
+        starts[size] = bucketStart;
+        size++;
+    }
+    
+    private void appendBucket(RollupLevel source, int index) {
+        ensureCapacity(size + 1);
+        starts[size] = source.starts[index];
+        firstTimes[size] = source.firstTimes[index];
+        firsts[size] = source.firsts[index];
+        lastTimes[size] = source.lastTimes[index];
+        lasts[size] = source.lasts[index];
+        mins[size] = source.mins[index];
+        maxes[size] = source.maxes[index];
+        sums[size] = source.sums[index];
+        counts[size] = source.counts[index];
+        size++;
+    }
+    
+    private void accumulate(int index, long epochSecond, int value) {
+        if (counts[index] == 0 || epochSecond < firstTimes[index]) {
+            firstTimes[index] = epochSecond;
+            firsts[index] = value;
+        }
+        if (counts[index] == 0 || epochSecond >= lastTimes[index]) {
+            lastTimes[index] = epochSecond;
+            lasts[index] = value;
+        }
+        mins[index] = counts[index] == 0 ? value : Math.min(mins[index], value);
+        maxes[index] = counts[index] == 0 ? value : Math.max(maxes[index], value);
+        sums[index] += value;
+        counts[index]++;
+    }
+    
+    // Merges a whole bucket, e.g. one restored from disk
+    public void put(long bucketStart, RollupBucket bucket) {
+        if (bucket.count == 0 || granularity.floor(bucketStart) < retainedFrom) return;
+        int index = bucketIndex(granularity.floor(bucketStart));
+        if (counts[index] == 0 || bucket.firstTime < firstTimes[index]) {
+            firstTimes[index] = bucket.firstTime;
+            firsts[index] = bucket.first;
+        }
+        if (counts[index] == 0 || bucket.lastTime >= lastTimes[index]) {
+            lastTimes[index] = bucket.lastTime;
+            lasts[index] = bucket.last;
+        }
+        mins[index] = counts[index] == 0 ? bucket.min : Math.min(mins[index], bucket.min);
+        maxes[index] = counts[index] == 0 ? bucket.max : Math.max(maxes[index], bucket.max);
+        sums[index] += bucket.sum;
+        counts[index] += bucket.count;
+    }
+    
+    // Index of the bucket starting at bucketStart, inserting an empty one if needed
+    private int bucketIndex(long bucketStart) {
+        if (size > 0 && starts[size - 1] == bucketStart) return size - 1;
+        
+        int index = (size == 0 || bucketStart > starts[size - 1]) ? size : lowerBound(bucketStart);
+        if (index < size && starts[index] == bucketStart) return index;
+        
+        ensureCapacity(size + 1);
+        int moved = size - index;
+        if (moved > 0) {
+            System.arraycopy(starts, index, starts, index + 1, moved);
+            System.arraycopy(firstTimes, index, firstTimes, index + 1, moved);
+            System.arraycopy(firsts, index, firsts, index + 1, moved);
+            System.arraycopy(lastTimes, index, lastTimes, index + 1, moved);
+            System.arraycopy(lasts, index, lasts, index + 1, moved);
+            System.arraycopy(mins, index, mins, index + 1, moved);
+            System.arraycopy(maxes, index, maxes, index + 1, moved);
+            System.arraycopy(sums, index, sums, index + 1, moved);
+            System.arraycopy(counts, index, counts, index + 1, moved);
+        }
+        starts[index] = bucketStart;
+        firstTimes[index] = 0;
+        firsts[index] = 0;
+        lastTimes[index] = 0;
+        lasts[index] = 0;
+        mins[index] = 0;
+        maxes[index] = 0;
+        sums[index] = 0;
+        counts[index] = 0;
+        size++;
+        return index;
+    }
+    
+    private void ensureCapacity(int required) {
+        if (required <= starts.length) return;
+        int capacity = Math.max(required, starts.length * 2);
+        starts = Arrays.copyOf(starts, capacity);
+        firstTimes = Arrays.copyOf(firstTimes, capacity);
+        firsts = Arrays.copyOf(firsts, capacity);
+        lastTimes = Arrays.copyOf(lastTimes, capacity);
+        lasts = Arrays.copyOf(lasts, capacity);
+        mins = Arrays.copyOf(mins, capacity);
+        maxes = Arrays.copyOf(maxes, capacity);
+        sums = Arrays.copyOf(sums, capacity);
+        counts = Arrays.copyOf(counts, capacity);
+    }
+    
+    // First bucket index whose start is >= bucketStart
+    public int lowerBound(long bucketStart) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (starts[mid] < bucketStart) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+    
+    // Merges every bucket starting in [from, to) into result
+    public void fold(RollupBucket result, long from, long to) {
+        if (from >= to) return;
+        for (int i = lowerBound(from); i < size && starts[i] < to; i++) {
+            result.merge(firstTimes[i], firsts[i], lastTimes[i], lasts[i], mins[i], maxes[i], sums[i], counts[i]);
+        }
+    }
+    
+    /**
+     * Drops every bucket starting before cutoff; later points before it are ignored too.
+     * Storage shrinks with the level, so a trimmed level does not keep its peak size.
+     */
+    public void dropBefore(long cutoff) {
+        if (cutoff <= retainedFrom) return;
+        retainedFrom = cutoff;
+        int dropped = lowerBound(cutoff);
+        if (dropped == 0) return;
+        size -= dropped;
+        int capacity = size < starts.length / 4 ? Math.max(INITIAL_CAPACITY, size * 2) : starts.length;
+        starts = shift(starts, dropped, capacity);
+        firstTimes = shift(firstTimes, dropped, capacity);
+        firsts = shift(firsts, dropped, capacity);
+        lastTimes = shift(lastTimes, dropped, capacity);
+        lasts = shift(lasts, dropped, capacity);
+        mins = shift(mins, dropped, capacity);
+        maxes = shift(maxes, dropped, capacity);
+        sums = shift(sums, dropped, capacity);
+        counts = shift(counts, dropped, capacity);
+    }
+    
+    private long[] shift(long[] column, int dropped, int capacity) {
+        long[] target = capacity == column.length ? column : new long[capacity];
+        System.arraycopy(column, dropped, target, 0, size);
+        return target;
+    }
+    
+    private int[] shift(int[] column, int dropped, int capacity) {
+        int[] target = capacity == column.length ? column : new int[capacity];
+        System.arraycopy(column, dropped, target, 0, size);
+        return target;
+    }
+    
+    public int size() { return size; }
+    public long startAt(int index) { return starts[index]; }
+    public long newestStart() { return starts[size - 1]; }
+    // Start of the oldest time this level still answers for; Long.MIN_VALUE if nothing was dropped
+    public long getRetainedFrom() { return retainedFrom; }
+    
+    public RollupBucket bucketAt(int index) {
+        RollupBucket bucket = new RollupBucket();
+        bucket.merge(firstTimes[index], firsts[index], lastTimes[index], lasts[index],
+            mins[index], maxes[index], sums[index], counts[index]);
+        return bucket;
+    }
+    
+    public void clear() {
+        size = 0;
+        retainedFrom = Long.MIN_VALUE;
+    }
+}
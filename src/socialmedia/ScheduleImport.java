@@ -0,0 +1,252 @@
+package socialmedia;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * Reads and validates a bulk file of scheduled posts for PostScheduler.scheduleBulk.
+ * Two formats are accepted, told apart by the first character of the first row:
+ * <ul>
+ *   <li>CSV: {@code Username,Content,ScheduledTime,Platform} (header optional, content
+ *       quoted as in scheduled_posts.csv)</li>
+ *   <li>JSON lines: {@code {"user":"...","content":"...","time":"...","platform":"..."}}</li>
+ * </ul>
+ * Times use yyyy-MM-dd HH:mm and must lie in the future; the platform is Instagram, X or
+ * Both. Lines are read in one sequential pass and parsed and validated in parallel.
+ */
+public class ScheduleImport {
+    private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+    private static final int MAX_REPORTED_ERRORS = 20;
+
+    // One valid row; "Both" has already been expanded into two rows
+    public static class Row {
+        public final String username;
+        public final String content;
+        public final LocalDateTime scheduledTime;
+        public final String platform;
+
+        public Row(String username, String content, LocalDateTime scheduledTime, String platform) {
+            this.username = username;
+            this.content = content;
+            this.scheduledTime = scheduledTime;
+            this.platform = platform;
+        }
+    }
+
+    public static class Result {
+        public final int lines;
+        public final int rejected;
+        public final List<String> errors; // the first few, with line numbers
+        public final List<Row> rows;      // in file order
+        private int scheduled;
+        private long millis;
+
+        Result(int lines, int rejected, List<String> errors, List<Row> rows) {
+            this.lines = lines;
+            this.rejected = rejected;
+            this.errors = errors;
+            this.rows = rows;
+        }
+
+        public int getScheduled() { return scheduled; }
+        public long getMillis() { return millis; }
+
+        void completed(int scheduled, long millis) {
+            this.scheduled = scheduled;
+            this.millis = millis;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d lines: %d posts scheduled, %d lines rejected (%d ms)",
+                lines, scheduled, rejected, millis);
+        }
+    }
+
+    public static Result read(File file, LocalDateTime now) throws IOException {
+        List<String> lines = new ArrayList<>();
+        List<Integer> lineNumbers = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new FileReader(file, StandardCharsets.UTF_8))) {
+            String line;
+            int number = 0;
+            while ((line = reader.readLine()) != null) {
+                number++;
+                if (line.isBlank()) continue;
+                if (lines.isEmpty() && isCsvHeader(line)) continue;
+                lines.add(line);
+                lineNumbers.add(number);
+            }
+        }
+        boolean json = !lines.isEmpty() && lines.get(0).trim().startsWith("{");
+        return validate(lines, lineNumbers, json, now);
+    }
+
+    private static boolean isCsvHeader(String line) {
+        String lower = line.trim().toLowerCase(Locale.ROOT);
+        return lower.startsWith("username,") || lower.startsWith("user,");
+    }
+
+    private static Result validate(List<String> lines, List<Integer> lineNumbers, boolean json, LocalDateTime now) {
+        Object[] parsed = new Object[lines.size()]; // Row[] or error String per line
+        IntStream.range(0, lines.size()).parallel().forEach(i -> {
+            try {
+                parsed[i] = parseLine(lines.get(i), json, now);
+            } catch (IllegalArgumentException | DateTimeParseException e) {
+                parsed[i] = "line " + lineNumbers.get(i) + ": " + e.getMessage();
+            }
+        });
+
+        List<Row> rows = new ArrayList<>(lines.size());
+        List<String> errors = new ArrayList<>();
+        int rejected = 0;
+        for (Object result : parsed) {
+            if (result instanceof Row[]) {
+                for (Row row : (Row[]) result) {
+                    rows.add(row);
+                }
+            } else {
+                rejected++;
+                if (errors.size() < MAX_REPORTED_ERRORS) errors.add((String) result);
+            }
+        }
+        return new Result(lines.size(), rejected, errors, rows);
+    }
+
+    private static Row[] parseLine(String line, boolean json, LocalDateTime now) {
+        String username;
+        String content;
+        String time;
+        String platform;
+        if (json) {
+            Map<String, String> fields = parseJsonObject(line);
+            username = fields.containsKey("user") ? fields.get("user") : fields.get("username");
+            content = fields.get("content");
+            time = fields.containsKey("time") ? fields.get("time") : fields.get("scheduledTime");
+            platform = fields.get("platform");
+        } else {
+            String[] parts = PostScheduler.parseCSVLine(line);
+            if (parts.length < 4) throw new IllegalArgumentException("expected 4 columns, found " + parts.length);
+            username = parts[0].trim();
+            content = parts[1];
+            time = parts[2].trim();
+            platform = parts[3].trim();
+        }
+
+        if (username == null || username.isBlank()) throw new IllegalArgumentException("missing user");
+        if (content == null || content.isBlank()) throw new IllegalArgumentException("missing content");
+        // scheduled_posts.csv keeps one post per line and does not quote usernames
+        if (username.indexOf(',') >= 0 || username.indexOf('"') >= 0 || hasLineBreak(username)) {
+            throw new IllegalArgumentException("user may not contain commas, quotes or line breaks");
+        }
+        if (hasLineBreak(content)) throw new IllegalArgumentException("content must be a single line");
+        if (time == null) throw new IllegalArgumentException("missing time");
+        if (platform == null) throw new IllegalArgumentException("missing platform");
+        LocalDateTime scheduledTime = LocalDateTime.parse(time.trim(), FORMATTER);
+        if (scheduledTime.isBefore(now)) throw new IllegalArgumentException("time " + time + " is in the past");
+
+        if (platform.equalsIgnoreCase("Both")) {
+            return new Row[] {
+                new Row(username, content, scheduledTime, "Instagram"),
+                new Row(username, content, scheduledTime, "X")
+            };
+        }
+        if (platform.equalsIgnoreCase("Instagram")) return new Row[] {new Row(username, content, scheduledTime, "Instagram")};
+        if (platform.equalsIgnoreCase("X")) return new Row[] {new Row(username, content, scheduledTime, "X")};
+        throw new IllegalArgumentException("unknown platform " + platform);
+    }
+
+    private static boolean hasLineBreak(String text) {
+        return text.indexOf('\n') >= 0 || text.indexOf('\r') >= 0;
+    }
+
+    // A flat JSON object of string (or bare literal) values; nesting is rejected
+    static Map<String, String> parseJsonObject(String line) {
+        Map<String, String> fields = new HashMap<>();
+        int[] pos = {skipSpaces(line, 0)};
+        expect(line, pos, '{');
+        if (peek(line, pos) == '}') return fields;
+        while (true) {
+            String key = readString(line, pos);
+            expect(line, pos, ':');
+            char c = peek(line, pos);
+            String value;
+            if (c == '"') {
+                value = readString(line, pos);
+            } else if (c == '{' || c == '[') {
+                throw new IllegalArgumentException("nested value for " + key);
+            } else {
+                int start = pos[0];
+                while (pos[0] < line.length() && ",} \t".indexOf(line.charAt(pos[0])) < 0) pos[0]++;
+                value = line.substring(start, pos[0]);
+                if (value.equals("null")) value = null;
+            }
+            fields.put(key, value);
+            c = peek(line, pos);
+            pos[0]++;
+            if (c == '}') return fields;
+            if (c != ',') throw new IllegalArgumentException("expected , or } at column " + pos[0]);
+        }
+    }
+
+    private static String readString(String line, int[] pos) {
+        expect(line, pos, '"');
+        StringBuilder value = new StringBuilder();
+        for (int i = pos[0]; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '"') {
+                pos[0] = i + 1;
+                return value.toString();
+            }
+            if (c != '\\') {
+                value.append(c);
+                continue;
+            }
+            if (++i >= line.length()) break;
+            char escaped = line.charAt(i);
+            switch (escaped) {
+                case 'n': value.append('\n'); break;
+                case 't': value.append('\t'); break;
+                case 'r': value.append('\r'); break;
+                case 'b': value.append('\b'); break;
+                case 'f': value.append('\f'); break;
+                case 'u':
+                    if (i + 4 >= line.length()) throw new IllegalArgumentException("bad \\u escape");
+                    value.append((char) Integer.parseInt(line.substring(i + 1, i + 5), 16));
+                    i += 4;
+                    break;
+                default: value.append(escaped); // \" \\ \/
+            }
+        }
+        throw new IllegalArgumentException("unterminated string");
+    }
+
+    private static void expect(String line, int[] pos, char expected) {
+        if (peek(line, pos) != expected) {
+            throw new IllegalArgumentException("expected " + expected + " at column " + (pos[0] + 1));
+        }
+        pos[0]++;
+    }
+
+    // Next non-space character, or 0 at the end of the line
+    private static char peek(String line, int[] pos) {
+        pos[0] = skipSpaces(line, pos[0]);
+        return pos[0] < line.length() ? line.charAt(pos[0]) : 0;
+    }
+
+    private static int skipSpaces(String line, int i) {
+        while (i < line.length() && Character.isWhitespace(line.charAt(i))) i++;
+        return i;
+    }
+}
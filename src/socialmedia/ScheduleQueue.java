@@ -0,0 +1,325 @@
+package socialmedia;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Pending scheduled posts ordered by the time they may go out: the due time, or the
+ * end of a rate-limit deferral, with ties broken by due time.
+ * The dispatcher sleeps until the earliest post is due (or an earlier one is added)
+ * and then takes every due post in one go, so each wake-up costs O(due * log pending)
+ * instead of a scan over all posts.
+ *
+ * "Now" comes from the given clock. With a VirtualClock nothing advances by itself: a
+ * driver reads nextReadyMillis(), moves the clock there and calls pollDue().
+ */
+public class ScheduleQueue {
+    // Wall-clock corrections are not seen by a timed wait, so never sleep longer than this
+    private static final long MAX_WAIT_MILLIS = 60_000;
+
+    private final PostHeap queue = new PostHeap();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition headChanged = lock.newCondition();
+    private final Clock clock;
+    private int cancelledInQueue;
+    private boolean closed;
+
+    public ScheduleQueue() {
+        this(Clock.systemDefaultZone());
+    }
+
+    public ScheduleQueue(Clock clock) {
+        this.clock = clock;
+    }
+
+    public void add(ScheduledPost post) {
+        lock.lock();
+        try {
+            // A post cancelled while out of the queue (e.g. on its way back from a deferral) stays out
+            if (post.isCancelled()) return;
+            queue.add(post);
+            // Only a new head moves the dispatcher's deadline
+            if (queue.peek() == post) headChanged.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // One lock and one heap rebuild for the whole batch; cancelled posts stay out, as in add()
+    public void addAll(Collection<ScheduledPost> posts) {
+        lock.lock();
+        try {
+            List<ScheduledPost> live = new ArrayList<>(posts.size());
+            for (ScheduledPost post : posts) {
+                if (!post.isCancelled()) live.add(post);
+            }
+            queue.addAll(live);
+            headChanged.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Drops a post that has already been marked cancelled.
+     * The entry stays in the heap and is discarded when it reaches the head; once cancelled
+     * entries are the majority the heap is rebuilt, so removal is O(1) amortized.
+     * Only posts actually in the heap are counted, so size() stays exact.
+     */
+    public void remove(ScheduledPost post) {
+        lock.lock();
+        try {
+            if (!post.queued || post.countedCancelled) return;
+            post.countedCancelled = true;
+            cancelledInQueue++;
+            if (cancelledInQueue > queue.size() / 2) {
+                queue.removeCancelled();
+                cancelledInQueue = 0;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Blocks until at least one post is due, then moves every due post into {@code out}
+     * in due order. Returns false once the queue is closed.
+     */
+    public boolean awaitDue(List<ScheduledPost> out) throws InterruptedException {
+        lock.lock();
+        try {
+            while (!closed) {
+                ScheduledPost head = liveHead();
+                if (head == null) {
+                    headChanged.await();
+                    continue;
+                }
+                long delay = head.getReadyEpochMillis() - clock.millis();
+                if (delay > 0) {
+                    headChanged.await(Math.min(delay, MAX_WAIT_MILLIS), TimeUnit.MILLISECONDS);
+                    continue;
+                }
+                drainDue(out);
+                return true;
+            }
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Non-blocking awaitDue: moves whatever is due right now into {@code out}. */
+    public int pollDue(List<ScheduledPost> out) {
+        lock.lock();
+        try {
+            return drainDue(out);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // When the earliest live post may go out; Long.MAX_VALUE if none is queued
+    public long nextReadyMillis() {
+        lock.lock();
+        try {
+            ScheduledPost head = liveHead();
+            return head == null ? Long.MAX_VALUE : queue.headReady();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // The post that goes out next, or null
+    public ScheduledPost peek() {
+        lock.lock();
+        try {
+            return liveHead();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Lets the dispatcher re-read the clock, e.g. after a virtual clock moved
+    public void wakeUp() {
+        lock.lock();
+        try {
+            headChanged.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Discards cancelled entries at the head; caller holds the lock
+    private ScheduledPost liveHead() {
+        ScheduledPost head = queue.peek();
+        while (head != null && head.isCancelled()) {
+            take();
+            head = queue.peek();
+        }
+        return head;
+    }
+
+    // Polls the head and settles the cancelled count; caller holds the lock
+    private ScheduledPost take() {
+        ScheduledPost post = queue.poll();
+        if (post.countedCancelled) cancelledInQueue--;
+        post.countedCancelled = false;
+        return post;
+    }
+
+    private int drainDue(List<ScheduledPost> out) {
+        long now = clock.millis();
+        int added = 0;
+        while (!queue.isEmpty() && queue.headReady() <= now) {
+            ScheduledPost post = take();
+            if (!post.isCancelled()) {
+                out.add(post);
+                added++;
+            }
+        }
+        return added;
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return Math.max(0, queue.size() - cancelledInQueue);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            headChanged.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Binary min-heap keyed by (ready time, due time). The keys are copied into parallel
+     * arrays when a post is added, so sifting compares longs instead of following a
+     * pointer to each post; with 100k+ posts pending that is most of the cost of a poll.
+     * A post's ready time only changes while it is out of the queue, so the copy stays valid.
+     */
+    private static final class PostHeap {
+        private ScheduledPost[] posts = new ScheduledPost[64];
+        private long[] ready = new long[64];
+        private long[] due = new long[64];
+        private int size;
+
+        int size() { return size; }
+        boolean isEmpty() { return size == 0; }
+        ScheduledPost peek() { return size == 0 ? null : posts[0]; }
+        long headReady() { return ready[0]; }
+
+        void add(ScheduledPost post) {
+            if (size == posts.length) {
+                int capacity = size * 2;
+                posts = Arrays.copyOf(posts, capacity);
+                ready = Arrays.copyOf(ready, capacity);
+                due = Arrays.copyOf(due, capacity);
+            }
+            post.queued = true;
+            siftUp(size++, post, post.getReadyEpochMillis(), post.getDueEpochMillis());
+        }
+
+        ScheduledPost poll() {
+            if (size == 0) return null;
+            ScheduledPost head = posts[0];
+            head.queued = false;
+            int last = --size;
+            ScheduledPost moved = posts[last];
+            posts[last] = null;
+            if (last > 0) siftDown(0, moved, ready[last], due[last]);
+            return head;
+        }
+
+        // Large batches are appended unsorted and the heap rebuilt in O(n)
+        void addAll(Collection<ScheduledPost> added) {
+            if (added.size() < size / 8) {
+                added.forEach(this::add);
+                return;
+            }
+            int needed = size + added.size();
+            if (needed > posts.length) {
+                int capacity = Math.max(needed, posts.length * 2);
+                posts = Arrays.copyOf(posts, capacity);
+                ready = Arrays.copyOf(ready, capacity);
+                due = Arrays.copyOf(due, capacity);
+            }
+            for (ScheduledPost post : added) {
+                post.queued = true;
+                set(size++, post, post.getReadyEpochMillis(), post.getDueEpochMillis());
+            }
+            heapify();
+        }
+
+        // Compacts away cancelled posts and rebuilds the heap in O(n)
+        void removeCancelled() {
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                if (posts[i].isCancelled()) {
+                    posts[i].queued = false;
+                    posts[i].countedCancelled = false;
+                    continue;
+                }
+                posts[kept] = posts[i];
+                ready[kept] = ready[i];
+                due[kept] = due[i];
+                kept++;
+            }
+            Arrays.fill(posts, kept, size, null);
+            size = kept;
+            heapify();
+        }
+
+        private void heapify() {
+            for (int i = (size >>> 1) - 1; i >= 0; i--) {
+                siftDown(i, posts[i], ready[i], due[i]);
+            }
+        }
+
+        private static boolean before(long readyA, long dueA, long readyB, long dueB) {
+            return readyA < readyB || (readyA == readyB && dueA < dueB);
+        }
+
+        private void siftUp(int k, ScheduledPost post, long r, long d) {
+            while (k > 0) {
+                int parent = (k - 1) >>> 1;
+                if (!before(r, d, ready[parent], due[parent])) break;
+                set(k, posts[parent], ready[parent], due[parent]);
+                k = parent;
+            }
+            set(k, post, r, d);
+        }
+
+        private void siftDown(int k, ScheduledPost post, long r, long d) {
+            int half = size >>> 1;
+            while (k < half) {
+                int child = 2 * k + 1;
+                int right = child + 1;
+                if (right < size && before(ready[right], due[right], ready[child], due[child])) child = right;
+                if (!before(ready[child], due[child], r, d)) break;
+                set(k, posts[child], ready[child], due[child]);
+                k = child;
+            }
+            set(k, post, r, d);
+        }
+
+        private void set(int k, ScheduledPost post, long r, long d) {
+            posts[k] = post;
+            ready[k] = r;
+            due[k] = d;
+        }
+    }
+}
@@ -1,35 +1,112 @@
 package socialmedia;
 
+import java.time.Clock;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class ScheduledPost {
+    private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+    
     private String content;
     private LocalDateTime scheduledTime;
     private String platform;
     private String author;
-    private boolean isPosted;
+    private volatile boolean isPosted;
+    private volatile LocalDateTime postedAt;
     private String postId;
+    private volatile String lastError;
+    private volatile boolean cancelled;
+    private final long dueEpochMillis;
+    private final String ruleId; // set for occurrences of a recurring schedule
+    // Set by the rate limiter; only changed while the post is out of the due queue
+    private volatile long deferredUntil;
+    private final AtomicBoolean deferred = new AtomicBoolean();
+    // Set before a failed publish goes back into the due queue; only changed while out of it
+    private volatile long retryAt;
+    private volatile int failedAttempts;
+    private volatile boolean outcomeUnknown; // a publish timed out; the platform may have taken it
+    // Guarded by the ScheduleQueue lock: in its heap, and counted there as a cancelled entry
+    boolean queued;
+    boolean countedCancelled;
     
     public ScheduledPost(String content, LocalDateTime scheduledTime, String platform, String author) {
+        this(content, scheduledTime, platform, author, null);
+    }
+    
+    // Restores a persisted post under its original ID
+    public ScheduledPost(String content, LocalDateTime scheduledTime, String platform, String author, String postId) {
+        this(content, scheduledTime, platform, author, postId, null);
+    }
+    
+    public ScheduledPost(String content, LocalDateTime scheduledTime, String platform, String author, String postId,
+                         String ruleId) {
         this.content = content;
         this.scheduledTime = scheduledTime;
         this.platform = platform;
         this.author = author;
         this.isPosted = false;
-        this.postId = generatePostId();
+        this.postId = postId != null ? postId : generatePostId();
+        this.dueEpochMillis = scheduledTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        this.ruleId = ruleId;
     }
     
     private String generatePostId() {
-        return "POST_" + System.currentTimeMillis() + "_" + author.hashCode();
+        return PostIdGenerator.getInstance().next();
     }
     
     public boolean isReadyToPost() {
-        return LocalDateTime.now().isAfter(scheduledTime) && !isPosted;
+        return isReadyToPost(Clock.systemDefaultZone());
+    }
+    
+    public boolean isReadyToPost(Clock clock) {
+        return LocalDateTime.now(clock).isAfter(scheduledTime) && !isPosted;
     }
     
-    public void markAsPosted() {
+    public void markAsPosted(LocalDateTime postedAt) {
+        this.postedAt = postedAt;
         this.isPosted = true;
+        this.lastError = null;
+        this.outcomeUnknown = false;
+    }
+    
+    // The post stays pending; the reason is shown until a later attempt succeeds
+    public void markFailed(String reason) {
+        this.lastError = reason;
+    }
+    
+    // Counts a failed attempt and returns how many there have been
+    public int recordFailedAttempt() {
+        return ++failedAttempts;
+    }
+    
+    public void retryAt(long epochMillis) {
+        this.retryAt = epochMillis;
+    }
+    
+    public void markOutcomeUnknown() {
+        this.outcomeUnknown = true;
+    }
+    
+    // Cancelled posts are skipped when they come up in the due queue
+    public void markCancelled() {
+        this.cancelled = true;
+    }
+    
+    // Holds the post back until its rate-limit reservation comes up
+    public void deferUntil(long epochMillis) {
+        this.deferredUntil = epochMillis;
+        deferred.set(true);
+    }
+    
+    // True for exactly one caller after deferUntil
+    public boolean releaseDeferral() {
+        return deferred.compareAndSet(true, false);
+    }
+    
+    public boolean isDeferred() {
+        return deferred.get();
     }
     
     // Getters and setters
@@ -38,10 +115,24 @@ public class ScheduledPost {
     public String getPlatform() { return platform; }
     public String getAuthor() { return author; }
     public boolean isPosted() { return isPosted; }
+    public LocalDateTime getPostedAt() { return postedAt; }
     public String getPostId() { return postId; }
+    public String getRuleId() { return ruleId; }
+    public long getDueEpochMillis() { return dueEpochMillis; }
+    public long getReadyEpochMillis() { return Math.max(Math.max(dueEpochMillis, deferredUntil), retryAt); }
+    public String getLastError() { return lastError; }
+    public int getFailedAttempts() { return failedAttempts; }
+    public boolean isOutcomeUnknown() { return outcomeUnknown; }
+    public boolean isCancelled() { return cancelled; }
     
     public String getFormattedScheduledTime() {
-        return scheduledTime.format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm"));
+        return scheduledTime.format(FORMATTER);
+    }
+    
+    // Empty until the post has been published
+    public String getFormattedPostedAt() {
+        LocalDateTime at = postedAt;
+        return at == null ? "" : at.format(FORMATTER);
     }
     
     @Override
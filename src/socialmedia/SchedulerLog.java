@@ -0,0 +1,293 @@
+package socialmedia;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Write-ahead log of PostScheduler mutations (SCHEDULE, CANCEL, PUBLISHED and UNKNOWN
+ * records for posts; RULE and RULE_END for recurring schedules).
+ * Each change appends one line instead of rewriting the snapshot; concurrent commits
+ * share a single flush (group commit). A checkpoint rotates the log aside, writes a
+ * fresh snapshot and only then deletes the rotated log.
+ *
+ * Callers must apply a change to their in-memory state before appending its record:
+ * everything in a rotated log is then already contained in the snapshot that follows.
+ * Replaying a record the snapshot already reflects must be harmless.
+ */
+public class SchedulerLog {
+    static final String HEADER = "Op,PostId,Username,ScheduledTime,Platform,Content,RuleId";
+    private static final String CHECKPOINT_SUFFIX = ".checkpoint";
+
+    public enum Op { SCHEDULE, CANCEL, PUBLISHED, UNKNOWN, RULE, RULE_END }
+
+    // Writes the full current state; must replace the old snapshot atomically
+    public interface Snapshotter {
+        void writeSnapshot() throws IOException;
+    }
+
+    private final File logFile;
+    private final Snapshotter snapshotter;
+    private final Object lock = new Object();
+    private final Object commitLock = new Object();
+    private final Object checkpointLock = new Object();
+
+    private boolean fsync = false;
+    private int checkpointThreshold = 10000;
+    private long checkpointIntervalMillis = 30000;
+
+    private FileOutputStream logStream;
+    private BufferedWriter writer;
+    private long appended;
+    private volatile long committed;
+    private int records;
+    private long checkpointSequence;
+    private ScheduledExecutorService background;
+
+    public SchedulerLog(String logPath, Snapshotter snapshotter) {
+        this.logFile = new File(logPath);
+        this.snapshotter = snapshotter;
+    }
+
+    public void setFsync(boolean fsync) { this.fsync = fsync; }
+    public void setCheckpointThreshold(int checkpointThreshold) { this.checkpointThreshold = Math.max(1, checkpointThreshold); }
+    public void setCheckpointIntervalMillis(long checkpointIntervalMillis) { this.checkpointIntervalMillis = Math.max(1, checkpointIntervalMillis); }
+
+    public int getRecords() {
+        synchronized (lock) {
+            return records;
+        }
+    }
+
+    /**
+     * Replays every record not yet folded into the snapshot, oldest first:
+     * logs left behind by an interrupted checkpoint, then the live log.
+     */
+    public void replay(Consumer<String[]> recordConsumer) {
+        synchronized (lock) {
+            for (File rotated : rotatedFiles()) {
+                readRecords(rotated, recordConsumer);
+                checkpointSequence = Math.max(checkpointSequence, rotatedSequence(rotated));
+            }
+            records = readRecords(logFile, recordConsumer);
+        }
+    }
+
+    public long schedule(ScheduledPost post) {
+        return append(String.format("%s,%s,%s,%s,%s,\"%s\",%s",
+            Op.SCHEDULE,
+            post.getPostId(),
+            post.getAuthor(),
+            post.getFormattedScheduledTime(),
+            post.getPlatform(),
+            post.getContent().replace("\"", "\"\""),
+            post.getRuleId() != null ? post.getRuleId() : ""));
+    }
+    
+    // Full state of the schedule; the latest record wins on replay
+    public long rule(RecurringSchedule schedule) {
+        return append(Op.RULE + "," + schedule.toCsv());
+    }
+    
+    public long ruleEnded(String ruleId) {
+        return append(Op.RULE_END + "," + ruleId);
+    }
+
+    public long cancel(String postId) {
+        return append(Op.CANCEL + "," + postId);
+    }
+
+    // Carries the publish time, so a replayed post is archived with the time it really went out,
+    // and whether it is already in the archive, so replay does not append it twice
+    public long published(ScheduledPost post, boolean archived) {
+        return append(Op.PUBLISHED + "," + post.getPostId() + "," + post.getFormattedPostedAt() + "," + archived);
+    }
+    
+    // A publish timed out: it may or may not have reached the platform
+    public long unknownOutcome(String postId) {
+        return append(Op.UNKNOWN + "," + postId);
+    }
+
+    // Buffers one record and returns its sequence number for commit()
+    private long append(String record) {
+        synchronized (lock) {
+            try {
+                ensureOpen();
+                writer.write(record);
+                writer.newLine();
+                records++;
+                return ++appended;
+            } catch (IOException e) {
+                System.err.println("Error appending to scheduler log: " + e.getMessage());
+                return appended;
+            }
+        }
+    }
+
+    /**
+     * Makes every record up to {@code sequence} durable.
+     * Whoever gets the commit lock flushes everything appended so far, so threads queued
+     * behind it usually find their records already committed and return at once.
+     */
+    public void commit(long sequence) {
+        if (committed >= sequence) return;
+        synchronized (commitLock) {
+            if (committed >= sequence) return;
+            try {
+                long target;
+                FileOutputStream stream;
+                synchronized (lock) {
+                    if (writer == null) return;
+                    target = appended;
+                    writer.flush();
+                    stream = logStream;
+                }
+                // Appends carry on while the disk catches up
+                if (fsync) stream.getChannel().force(false);
+                committed = target;
+            } catch (IOException e) {
+                System.err.println("Error committing scheduler log: " + e.getMessage());
+            }
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (writer != null) return;
+        File dir = logFile.getAbsoluteFile().getParentFile();
+        if (dir != null && !dir.exists()) dir.mkdirs();
+
+        boolean isNewFile = !logFile.exists() || logFile.length() == 0;
+        logStream = new FileOutputStream(logFile, true);
+        writer = new BufferedWriter(new OutputStreamWriter(logStream, StandardCharsets.UTF_8));
+        if (isNewFile) {
+            writer.write(HEADER);
+            writer.newLine();
+        }
+    }
+
+    private void closeWriter() throws IOException {
+        if (writer == null) return;
+        writer.flush();
+        if (fsync) logStream.getChannel().force(false);
+        writer.close();
+        writer = null;
+        logStream = null;
+        committed = appended;
+    }
+
+    public void startBackgroundTasks() {
+        synchronized (lock) {
+            if (background != null) return;
+            background = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "SchedulerLog");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        background.scheduleWithFixedDelay(() -> {
+            if (getRecords() >= checkpointThreshold) checkpoint();
+        }, checkpointIntervalMillis, checkpointIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public void checkpoint() {
+        try {
+            checkpoint(false);
+        } catch (IOException e) {
+            System.err.println("Error writing scheduler checkpoint: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Folds the log into a new snapshot.
+     * Appends only wait for the rename of the live log; the snapshot is written outside the lock.
+     * With {@code force} the snapshot is written even when nothing has been logged, for
+     * changes that were made in memory without a log record (bulk scheduling).
+     * Throws if the log could not be rotated or the snapshot not written; rotated logs
+     * are then kept, so nothing that was logged is lost.
+     */
+    public void checkpoint(boolean force) throws IOException {
+        synchronized (checkpointLock) {
+            synchronized (commitLock) {
+                synchronized (lock) {
+                    if (records > 0) {
+                        closeWriter();
+                        File rotated = new File(logFile.getPath() + "." + (++checkpointSequence) + CHECKPOINT_SUFFIX);
+                        Files.move(logFile.toPath(), rotated.toPath(), StandardCopyOption.ATOMIC_MOVE);
+                        records = 0;
+                    }
+                }
+            }
+
+            File[] rotated = rotatedFiles();
+            if (rotated.length == 0 && !force) return;
+            snapshotter.writeSnapshot();
+            for (File file : rotated) {
+                Files.deleteIfExists(file.toPath());
+            }
+        }
+    }
+
+    private File[] rotatedFiles() {
+        File dir = logFile.getAbsoluteFile().getParentFile();
+        String prefix = logFile.getName() + ".";
+        File[] files = dir == null ? null : dir.listFiles((d, name) ->
+            name.startsWith(prefix) && name.endsWith(CHECKPOINT_SUFFIX) && rotatedSequence(new File(d, name)) >= 0);
+        if (files == null) return new File[0];
+        Arrays.sort(files, Comparator.comparingLong(this::rotatedSequence));
+        return files;
+    }
+
+    private long rotatedSequence(File rotated) {
+        String name = rotated.getName();
+        String middle = name.substring(logFile.getName().length() + 1,
+            name.length() - CHECKPOINT_SUFFIX.length());
+        try {
+            return Long.parseLong(middle);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static int readRecords(File file, Consumer<String[]> recordConsumer) {
+        if (!file.exists()) return 0;
+        int count = 0;
+        try (BufferedReader reader = new BufferedReader(new FileReader(file, StandardCharsets.UTF_8))) {
+            String line = reader.readLine(); // Skip header
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) continue;
+                recordConsumer.accept(PostScheduler.parseCSVLine(line));
+                count++;
+            }
+        } catch (IOException e) {
+            System.err.println("Error reading scheduler log: " + e.getMessage());
+        }
+        return count;
+    }
+
+    // Checkpoints on the way out so the next start only has to read the snapshot
+    public void shutdown() {
+        if (background != null) {
+            background.shutdown();
+            try {
+                background.awaitTermination(30, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        checkpoint();
+        synchronized (lock) {
+            try {
+                closeWriter();
+            } catch (IOException e) {
+                System.err.println("Error closing scheduler log: " + e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,270 @@
+package socialmedia;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and latency histograms for PostScheduler: publish lag (actual publish time
+ * against the scheduled time), dispatcher tick duration, queue depth, publish outcomes
+ * and time spent persisting. Recording is lock-free and cheap enough for every post.
+ *
+ * Histograms exist twice: cumulative since start for snapshot(), and a window that
+ * windowSnapshot() drains, so the periodic dump shows how the last interval went.
+ */
+public class SchedulerMetrics {
+    static final String CSV_HEADER = "Timestamp,QueueDepth,HeadLagMs,Published,Failed,TimedOut,Deferrals,Ticks,"
+        + "LagP50Ms,LagP99Ms,LagMaxMs,TickP99Us,TickMaxUs,CommitP99Us,SnapshotMaxMs,ArchiveP99Us";
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    /**
+     * Log-linear histogram: four buckets per power of two, so a reported percentile is
+     * within 25% of the true value. Values are non-negative longs in any unit.
+     */
+    public static class Histogram {
+        private static final int BUCKETS = 4 + 61 * 4;
+
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+        private final LongAdder sum = new LongAdder();
+        private final AtomicLong max = new AtomicLong();
+
+        public void record(long value) {
+            long v = Math.max(0, value);
+            buckets.incrementAndGet(bucketOf(v));
+            sum.add(v);
+            if (v > max.get()) max.accumulateAndGet(v, Math::max);
+        }
+
+        private static int bucketOf(long v) {
+            if (v < 4) return (int) v;
+            int exponent = 63 - Long.numberOfLeadingZeros(v);
+            int sub = (int) (v >>> (exponent - 2)) & 3;
+            return 4 + (exponent - 2) * 4 + sub;
+        }
+
+        // Largest value that falls into the bucket
+        private static long upperBound(int bucket) {
+            if (bucket < 4) return bucket;
+            int exponent = (bucket - 4) / 4 + 2;
+            int sub = (bucket - 4) % 4;
+            return ((4L + sub + 1) << (exponent - 2)) - 1;
+        }
+
+        public Summary summary() {
+            return summarize(false);
+        }
+
+        // Summary of everything recorded since the last drain, and a fresh start
+        Summary drain() {
+            return summarize(true);
+        }
+
+        private Summary summarize(boolean reset) {
+            long[] counts = new long[BUCKETS];
+            long total = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                counts[i] = reset ? buckets.getAndSet(i, 0) : buckets.get(i);
+                total += counts[i];
+            }
+            long highest = reset ? max.getAndSet(0) : max.get();
+            long added = reset ? sum.sumThenReset() : sum.sum();
+            return new Summary(total, total == 0 ? 0 : (double) added / total,
+                percentile(counts, total, 0.50, highest),
+                percentile(counts, total, 0.90, highest),
+                percentile(counts, total, 0.99, highest),
+                highest);
+        }
+
+        private static long percentile(long[] counts, long total, double fraction, long highest) {
+            if (total == 0) return 0;
+            long rank = (long) Math.ceil(total * fraction);
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) return Math.min(upperBound(i), highest);
+            }
+            return highest;
+        }
+    }
+
+    public static class Summary {
+        public final long count;
+        public final double mean;
+        public final long p50;
+        public final long p90;
+        public final long p99;
+        public final long max;
+
+        Summary(long count, double mean, long p50, long p90, long p99, long max) {
+            this.count = count;
+            this.mean = mean;
+            this.p50 = p50;
+            this.p90 = p90;
+            this.p99 = p99;
+            this.max = max;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("n=%d mean=%.1f p50=%d p90=%d p99=%d max=%d", count, mean, p50, p90, p99, max);
+        }
+    }
+
+    public static class Snapshot {
+        public final LocalDateTime timestamp;
+        public final int queueDepth;
+        public final int maxQueueDepth;
+        public final long headLagMillis;     // how overdue the next post to go out is; 0 when it is not
+        public final long published;
+        public final long failed;
+        public final long timedOut;
+        public final long deferrals;
+        public final long ticks;
+        public final Summary lagMillis;      // scheduled time to publish completion
+        public final Summary publishMillis;  // time spent in the publisher
+        public final Summary tickMicros;     // one dispatcher pass over a batch of due posts
+        public final Summary batchSize;
+        public final Summary commitMicros;   // scheduler log commits
+        public final Summary snapshotMillis; // checkpoint snapshots
+        public final Summary archiveMicros;  // archive appends of published posts
+
+        Snapshot(LocalDateTime timestamp, int queueDepth, int maxQueueDepth, long headLagMillis,
+                 long published, long failed, long timedOut, long deferrals, long ticks,
+                 Summary lagMillis, Summary publishMillis, Summary tickMicros, Summary batchSize,
+                 Summary commitMicros, Summary snapshotMillis, Summary archiveMicros) {
+            this.timestamp = timestamp;
+            this.queueDepth = queueDepth;
+            this.maxQueueDepth = maxQueueDepth;
+            this.headLagMillis = headLagMillis;
+            this.published = published;
+            this.failed = failed;
+            this.timedOut = timedOut;
+            this.deferrals = deferrals;
+            this.ticks = ticks;
+            this.lagMillis = lagMillis;
+            this.publishMillis = publishMillis;
+            this.tickMicros = tickMicros;
+            this.batchSize = batchSize;
+            this.commitMicros = commitMicros;
+            this.snapshotMillis = snapshotMillis;
+            this.archiveMicros = archiveMicros;
+        }
+
+        String toCsv() {
+            return String.join(",",
+                timestamp.format(TIMESTAMP),
+                String.valueOf(queueDepth),
+                String.valueOf(headLagMillis),
+                String.valueOf(published),
+                String.valueOf(failed),
+                String.valueOf(timedOut),
+                String.valueOf(deferrals),
+                String.valueOf(ticks),
+                String.valueOf(lagMillis.p50),
+                String.valueOf(lagMillis.p99),
+                String.valueOf(lagMillis.max),
+                String.valueOf(tickMicros.p99),
+                String.valueOf(tickMicros.max),
+                String.valueOf(commitMicros.p99),
+                String.valueOf(snapshotMillis.max),
+                String.valueOf(archiveMicros.p99));
+        }
+
+        @Override
+        public String toString() {
+            return "Scheduler metrics at " + timestamp.format(TIMESTAMP) + "\n"
+                + "  queue:     depth=" + queueDepth + " max=" + maxQueueDepth + " headLag=" + headLagMillis + "ms\n"
+                + "  outcomes:  published=" + published + " failed=" + failed + " timedOut=" + timedOut
+                + " deferrals=" + deferrals + "\n"
+                + "  lag ms:    " + lagMillis + "\n"
+                + "  publish ms:" + publishMillis + "\n"
+                + "  tick us:   " + tickMicros + " (ticks=" + ticks + ")\n"
+                + "  batch:     " + batchSize + "\n"
+                + "  commit us: " + commitMicros + "\n"
+                + "  snapshot ms:" + snapshotMillis + "\n"
+                + "  archive us:" + archiveMicros;
+        }
+    }
+
+    private final Histogram lag = new Histogram();
+    private final Histogram publish = new Histogram();
+    private final Histogram tick = new Histogram();
+    private final Histogram batch = new Histogram();
+    private final Histogram commit = new Histogram();
+    private final Histogram snapshot = new Histogram();
+    private final Histogram archive = new Histogram();
+    private final Histogram lagWindow = new Histogram();
+    private final Histogram tickWindow = new Histogram();
+    private final Histogram commitWindow = new Histogram();
+    private final Histogram snapshotWindow = new Histogram();
+    private final Histogram archiveWindow = new Histogram();
+
+    private final LongAdder published = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder timedOut = new LongAdder();
+    private final LongAdder ticks = new LongAdder();
+    private final AtomicLong maxQueueDepth = new AtomicLong();
+
+    public void recordTick(long nanos, int batchSize, int queueDepth) {
+        long micros = nanos / 1000;
+        tick.record(micros);
+        tickWindow.record(micros);
+        batch.record(batchSize);
+        ticks.increment();
+        recordQueueDepth(queueDepth);
+    }
+
+    public void recordQueueDepth(int queueDepth) {
+        if (queueDepth > maxQueueDepth.get()) maxQueueDepth.accumulateAndGet(queueDepth, Math::max);
+    }
+
+    public void recordPublished(long lagMillis, long publishMillis) {
+        published.increment();
+        lag.record(lagMillis);
+        lagWindow.record(lagMillis);
+        publish.record(publishMillis);
+    }
+
+    public void recordFailed(boolean timeout) {
+        (timeout ? timedOut : failed).increment();
+    }
+
+    public void recordCommit(long nanos) {
+        commit.record(nanos / 1000);
+        commitWindow.record(nanos / 1000);
+    }
+
+    public void recordSnapshot(long nanos) {
+        snapshot.record(nanos / 1_000_000);
+        snapshotWindow.record(nanos / 1_000_000);
+    }
+
+    public void recordArchive(long nanos) {
+        archive.record(nanos / 1000);
+        archiveWindow.record(nanos / 1000);
+    }
+
+    // Everything since start
+    public Snapshot snapshot(LocalDateTime now, int queueDepth, long headLagMillis, long deferrals) {
+        return build(now, queueDepth, headLagMillis, deferrals,
+            lag.summary(), tick.summary(), commit.summary(), snapshot.summary(), archive.summary());
+    }
+
+    // Counters since start, latencies since the previous window snapshot
+    Snapshot windowSnapshot(LocalDateTime now, int queueDepth, long headLagMillis, long deferrals) {
+        return build(now, queueDepth, headLagMillis, deferrals,
+            lagWindow.drain(), tickWindow.drain(), commitWindow.drain(), snapshotWindow.drain(), archiveWindow.drain());
+    }
+
+    private Snapshot build(LocalDateTime now, int queueDepth, long headLagMillis, long deferrals,
+                           Summary lagSummary, Summary tickSummary, Summary commitSummary,
+                           Summary snapshotSummary, Summary archiveSummary) {
+        recordQueueDepth(queueDepth);
+        return new Snapshot(now, queueDepth, (int) maxQueueDepth.get(), headLagMillis,
+            published.sum(), failed.sum(), timedOut.sum(), deferrals, ticks.sum(),
+            lagSummary, publish.summary(), tickSummary, batch.summary(),
+            commitSummary, snapshotSummary, archiveSummary);
+    }
+}
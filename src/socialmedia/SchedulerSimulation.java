@@ -0,0 +1,233 @@
+package socialmedia;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Soak test for the scheduling core in virtual time.
+ * Every account gets a recurring schedule (daily or weekday cron, or an interval); the
+ * driver moves a VirtualClock straight to the next ready post instead of sleeping, and
+ * hands the due posts to the same PostDispatcher and RecurringMaterializer that
+ * PostScheduler runs: due queue, rate-limit deferral, one queued occurrence per rule.
+ * Publishing is only recorded, nothing touches profiles/.
+ *
+ * Usage: java socialmedia.SchedulerSimulation [accounts] [days] [platformPostsPerSecond]
+ * Without a platform rate nothing is rate-limited; with one, each platform is held to
+ * that rate and accounts to PublishRateLimiter's default account limit. Cron posts bunch
+ * up on the hour and half hour, so e.g. {@code 20000 90 50} defers posts at every peak.
+ *
+ * Not yet "a year in seconds": one core publishes roughly 200k posts/s here, so the
+ * default run (100k accounts for a year, about 36M posts) takes around three minutes.
+ * The time goes into the heap sifts, the cron evaluation and one post object per
+ * occurrence; cutting it further, or splitting the run by account, is still open.
+ */
+public class SchedulerSimulation {
+    private static final LocalDateTime START = LocalDateTime.of(2025, 1, 1, 0, 0);
+    private static final String[] PLATFORMS = {"Instagram", "X"};
+
+    public static class Report {
+        public final int accounts;
+        public final int days;
+        public final long published;
+        public final long materialized;
+        public final long ticks;
+        public final long deferrals;
+        public final int maxQueueDepth;
+        public final long wallMillis;
+        public final long maxLagMillis;
+        public final double avgLagMillis;
+        public final long early;                   // published before their due time
+        public final long accountOrderViolations;  // an account's posts out of due order
+        public final long dispatchOrderViolations; // dispatched out of ready-time order
+
+        Report(int accounts, int days, long published, long materialized, long ticks, long deferrals,
+               int maxQueueDepth, long wallMillis, long maxLagMillis, double avgLagMillis,
+               long early, long accountOrderViolations, long dispatchOrderViolations) {
+            this.accounts = accounts;
+            this.days = days;
+            this.published = published;
+            this.materialized = materialized;
+            this.ticks = ticks;
+            this.deferrals = deferrals;
+            this.maxQueueDepth = maxQueueDepth;
+            this.wallMillis = wallMillis;
+            this.maxLagMillis = maxLagMillis;
+            this.avgLagMillis = avgLagMillis;
+            this.early = early;
+            this.accountOrderViolations = accountOrderViolations;
+            this.dispatchOrderViolations = dispatchOrderViolations;
+        }
+
+        public double postsPerSecond() {
+            return published * 1000.0 / Math.max(1, wallMillis);
+        }
+
+        public boolean isCorrect() {
+            return published == materialized && early == 0
+                && accountOrderViolations == 0 && dispatchOrderViolations == 0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d accounts, %d days: %d posts published in %d ms (%.0f posts/s, %d ticks)%n"
+                    + "  max queue depth %d, deferrals %d, lag avg %.1f min / max %.1f min%n"
+                    + "  lost %d, early %d, account order violations %d, dispatch order violations %d -> %s",
+                accounts, days, published, wallMillis, postsPerSecond(), ticks,
+                maxQueueDepth, deferrals, avgLagMillis / 60000.0, maxLagMillis / 60000.0,
+                materialized - published, early, accountOrderViolations, dispatchOrderViolations,
+                isCorrect() ? "OK" : "FAILED");
+        }
+    }
+
+    private final int accounts;
+    private final int days;
+    private final double platformRate;
+    private final long seed;
+
+    private final VirtualClock clock = new VirtualClock(START);
+    private final ScheduleQueue queue = new ScheduleQueue(clock);
+    private final PublishRateLimiter rateLimiter = new PublishRateLimiter();
+    private final Map<String, RecurringSchedule> schedules = new HashMap<>();
+    private long nextPostId;
+    private final RecurringMaterializer recurring = new RecurringMaterializer(clock, schedules,
+        () -> "SIM_" + (++nextPostId), new RecurringMaterializer.Listener() {
+            @Override
+            public long materialized(RecurringSchedule schedule, ScheduledPost occurrence) {
+                materialized++;
+                queue.add(occurrence);
+                return 0;
+            }
+
+            @Override
+            public long ended(RecurringSchedule schedule) {
+                return 0;
+            }
+        });
+    private final PostDispatcher dispatcher = new PostDispatcher(clock, queue, rateLimiter, recurring::advance, this::publish);
+    private final Account[] accountsByRule;
+
+    private long published;
+    private long materialized;
+    private long lagTotal;
+    private long maxLag;
+    private long early;
+    private long accountOrderViolations;
+    private long dispatchOrderViolations;
+    private long lastReady = Long.MIN_VALUE;
+
+    private static class Account {
+        long lastDue = Long.MIN_VALUE;
+    }
+
+    // A platformRate <= 0 switches rate limiting off
+    public SchedulerSimulation(int accounts, int days, double platformRate, long seed) {
+        this.accounts = accounts;
+        this.days = days;
+        this.platformRate = platformRate;
+        this.seed = seed;
+        this.accountsByRule = new Account[accounts];
+        if (platformRate > 0) {
+            rateLimiter.setDefaultPlatformLimit(new PublishRateLimiter.Limit(platformRate, (int) Math.ceil(platformRate)));
+        } else {
+            rateLimiter.setDefaultPlatformLimit(null);
+            rateLimiter.setAccountLimit(null);
+        }
+    }
+
+    public Report run() {
+        long started = System.currentTimeMillis();
+        createSchedules();
+
+        List<ScheduledPost> due = new ArrayList<>();
+        long ticks = 0;
+        int maxQueueDepth = queue.size();
+        long next;
+        while ((next = queue.nextReadyMillis()) != Long.MAX_VALUE) {
+            // Nothing can happen before the next ready post, so jump straight to it
+            clock.advanceTo(next);
+            queue.pollDue(due);
+            ticks++;
+            dispatcher.dispatch(due);
+            due.clear();
+            maxQueueDepth = Math.max(maxQueueDepth, queue.size());
+        }
+
+        long deferrals = rateLimiter.stats(0).deferralsTotal;
+        return new Report(accounts, days, published, materialized, ticks, deferrals, maxQueueDepth,
+            System.currentTimeMillis() - started, maxLag,
+            published == 0 ? 0 : (double) lagTotal / published,
+            early, accountOrderViolations, dispatchOrderViolations);
+    }
+
+    private void createSchedules() {
+        Random random = new Random(seed);
+        LocalDateTime end = START.plusDays(days);
+        for (int i = 0; i < accounts; i++) {
+            String spec;
+            LocalDateTime start = START;
+            int kind = random.nextInt(4);
+            if (kind < 2) {
+                spec = minuteOf(random) + " " + random.nextInt(24) + " * * *";
+            } else if (kind == 2) {
+                spec = minuteOf(random) + " " + (7 + random.nextInt(12)) + " * * MON-FRI";
+            } else {
+                int hours = 6 + random.nextInt(43);
+                spec = "every " + hours + "h";
+                start = START.plusMinutes(random.nextInt(hours * 60));
+            }
+            RecurringSchedule schedule = new RecurringSchedule(PostIdGenerator.RULE_PREFIX + i, "user" + i, "Simulated post " + i,
+                PLATFORMS[i % PLATFORMS.length], RecurrenceRule.parse(spec), start, end, 0);
+            accountsByRule[i] = new Account();
+            schedules.put(schedule.getRuleId(), schedule);
+            recurring.materializeNext(schedule, START);
+        }
+    }
+
+    // Most people pick a round time, so cron posts bunch up on the hour and half hour
+    private static int minuteOf(Random random) {
+        return random.nextInt(4) == 0 ? random.nextInt(60) : 30 * random.nextInt(2);
+    }
+
+    // Rule IDs are RULE_<account index>, so no map lookup is needed
+    private Account accountOf(ScheduledPost post) {
+        return accountsByRule[(int) PostIdGenerator.parse(post.getRuleId())];
+    }
+
+    // Stands in for the publishing pool: records the post as published on the spot
+    private void publish(ScheduledPost post) {
+        Account account = accountOf(post);
+        long now = clock.millis();
+        long ready = post.getReadyEpochMillis();
+        if (ready < lastReady) dispatchOrderViolations++;
+        lastReady = ready;
+
+        long lag = now - post.getDueEpochMillis();
+        if (lag < 0) early++;
+        lagTotal += Math.max(0, lag);
+        maxLag = Math.max(maxLag, lag);
+
+        if (account.lastDue > post.getDueEpochMillis()) accountOrderViolations++;
+        account.lastDue = post.getDueEpochMillis();
+
+        post.markAsPosted(LocalDateTime.now(clock));
+        published++;
+    }
+
+    public static void main(String[] args) {
+        int accounts = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int days = args.length > 1 ? Integer.parseInt(args[1]) : 365;
+        double platformRate = args.length > 2 ? Double.parseDouble(args[2]) : 0;
+
+        System.out.println("Simulating " + accounts + " accounts over " + days + " days"
+            + (platformRate > 0 ? " at " + platformRate + " posts/s per platform" : "") + " ("
+            + Duration.ofDays(days).toHours() + " virtual hours)...");
+        Report report = new SchedulerSimulation(accounts, days, platformRate, 42).run();
+        System.out.println(report);
+        if (!report.isCorrect()) System.exit(1);
+    }
+}
@@ -0,0 +1,110 @@
+package socialmedia;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Directory of immutable analytics segments named analytics-000001.seg, analytics-000002.seg, ...
+ * Segments are loaded in sequence order. As a compaction target it turns each
+ * journal batch into a new segment instead of rewriting a CSV file; compaction.state
+ * names the journal rotation being merged and the segment it goes to.
+ */
+public class SegmentDirectory implements AnalyticsJournal.CompactionTarget {
+    private static final String PREFIX = "analytics-";
+    private static final String STATE_FILE = "compaction.state";
+    private static final String NO_SEGMENT = "-";
+    private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+    
+    private final File directory;
+    
+    public SegmentDirectory(String path) {
+        this.directory = new File(path);
+    }
+    
+    public File getDirectory() {
+        return directory;
+    }
+    
+    // Segment files in sequence order
+    public List<File> list() {
+        File[] files = directory.listFiles((dir, name) ->
+            name.startsWith(PREFIX) && name.endsWith(AnalyticsSegment.EXTENSION));
+        if (files == null) return new ArrayList<>();
+        Arrays.sort(files, (a, b) -> Long.compare(sequenceOf(a), sequenceOf(b)));
+        return new ArrayList<>(Arrays.asList(files));
+    }
+    
+    private static long sequenceOf(File file) {
+        String name = file.getName();
+        try {
+            return Long.parseLong(name.substring(PREFIX.length(), name.length() - AnalyticsSegment.EXTENSION.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+    
+    public long nextSequence() {
+        long max = 0;
+        for (File file : list()) {
+            max = Math.max(max, sequenceOf(file));
+        }
+        return max + 1;
+    }
+    
+    public File write(AnalyticsSegment.Builder builder) throws IOException {
+        File file = fileFor(nextSequence());
+        builder.writeTo(file);
+        return file;
+    }
+    
+    // Lets parallel writers claim a range of sequence numbers up front
+    public File fileFor(long sequence) {
+        return new File(directory, String.format("%s%06d%s", PREFIX, sequence, AnalyticsSegment.EXTENSION));
+    }
+    
+    public long load(AnalyticsLogLoader.RowSink sink) throws IOException {
+        long rows = 0;
+        for (File file : list()) {
+            rows += AnalyticsSegment.read(file, sink);
+        }
+        return rows;
+    }
+    
+    // A rotation counts as merged once its segment exists; segments appear by atomic rename
+    @Override
+    public long lastMerged() {
+        String[] state = AnalyticsJournal.readState(new File(directory, STATE_FILE));
+        if (state == null || state.length < 2) return 0;
+        long rotation = Long.parseLong(state[0]);
+        boolean landed = state[1].equals(NO_SEGMENT) || new File(directory, state[1]).exists();
+        return landed ? rotation : rotation - 1;
+    }
+    
+    @Override
+    public void merge(File journalRows, long rotation, boolean fsync) throws IOException {
+        AnalyticsSegment.Builder builder = new AnalyticsSegment.Builder();
+        AnalyticsJournal.readRows(journalRows, (username, parts) -> {
+            try {
+                builder.add(username, parts[2], parts[3],
+                    MetricSeries.toEpochSecond(LocalDateTime.parse(parts[1], FORMATTER)),
+                    Integer.parseInt(parts[4]), parts[5]);
+            } catch (DateTimeParseException | NumberFormatException e) {
+                System.err.println("Error parsing analytics entry: " + e.getMessage());
+            }
+        });
+        if (!directory.exists()) directory.mkdirs();
+        File segment = builder.isEmpty() ? null : fileFor(nextSequence());
+        // Recorded first, so a crash after the segment lands is not merged a second time
+        AnalyticsJournal.writeState(new File(directory, STATE_FILE),
+            rotation + " " + (segment == null ? NO_SEGMENT : segment.getName()), fsync);
+        if (segment != null) {
+            builder.writeTo(segment, fsync);
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package socialmedia;
+
+/**
+ * Read-only window over a MetricSeries' columns.
+ * The view shares the series' arrays instead of copying them; the series only ever
+ * appends past the end or swaps in new arrays, so a view stays a consistent snapshot.
+ */
+public class SeriesView {
+    private final long[] timestamps;
+    private final int[] values;
+    private final int[] contentIds;
+    private final int start;
+    private final int end;
+    
+    SeriesView(long[] timestamps, int[] values, int[] contentIds, int start, int end) {
+        this.timestamps = timestamps;
+        this.values = values;
+        this.contentIds = contentIds;
+        this.start = start;
+        this.end = end;
+    }
+    
+    public static SeriesView empty() {
+        return new SeriesView(new long[0], new int[0], new int[0], 0, 0);
+    }
+    
+    public int size() { return end - start; }
+    public boolean isEmpty() { return end == start; }
+    
+    public long timestampAt(int index) { return timestamps[checkIndex(index)]; }
+    public int valueAt(int index) { return values[checkIndex(index)]; }
+    public int contentIdAt(int index) { return contentIds[checkIndex(index)]; }
+    
+    private int checkIndex(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of view of size " + size());
+        }
+        return start + index;
+    }
+}
@@ -0,0 +1,165 @@
+package socialmedia;
+
+import java.util.Arrays;
+
+/**
+ * Time-based sliding window over one series, kept as a ring of fixed-width slots.
+ * Each point touches exactly one slot and the EWMA, so updates are O(1) no matter
+ * how long the history is; reading scans the constant number of slots.
+ * The window edge moves one slot at a time, so it is exact to within length / SLOTS.
+ */
+public class SlidingWindow {
+    public static final int SLOTS = 24;
+
+    public enum Span {
+        HOUR(3600),
+        DAY(86400),
+        WEEK(7 * 86400),
+        MONTH(30 * 86400);
+
+        public final long seconds;
+
+        Span(long seconds) {
+            this.seconds = seconds;
+        }
+
+        // Span covering exactly that many days, or null when there is none
+        public static Span ofDays(int days) {
+            switch (days) {
+                case 1: return DAY;
+                case 7: return WEEK;
+                case 30: return MONTH;
+                default: return null;
+            }
+        }
+    }
+
+    // Values of a window as of one instant
+    public static class WindowStats {
+        public final Span span;
+        public final int count;
+        public final long sum;
+        public final long firstTime;
+        public final int first;
+        public final long lastTime;
+        public final int last;
+        public final double ewma;
+
+        WindowStats(Span span, int count, long sum, long firstTime, int first, long lastTime, int last, double ewma) {
+            this.span = span;
+            this.count = count;
+            this.sum = sum;
+            this.firstTime = firstTime;
+            this.first = first;
+            this.lastTime = lastTime;
+            this.last = last;
+            this.ewma = ewma;
+        }
+
+        public double getAverage() { return count == 0 ? 0 : (double) sum / count; }
+        public int getTotalChange() { return last - first; }
+
+        // Same definition as TrendAnalysis: change relative to the oldest value in the window
+        public double getGrowthRate() {
+            return first == 0 ? 0 : ((double) (last - first) / first) * 100;
+        }
+    }
+
+    private final Span span;
+    private final long slotWidth;
+    private final double timeConstant;
+
+    private final long[] slotIds = new long[SLOTS];
+    private final long[] sums = new long[SLOTS];
+    private final int[] counts = new int[SLOTS];
+    private final int[] firstOffsets = new int[SLOTS]; // seconds from slot start
+    private final int[] firsts = new int[SLOTS];
+    private final int[] lastOffsets = new int[SLOTS];
+    private final int[] lasts = new int[SLOTS];
+    private long newestSlot = Long.MIN_VALUE;
+
+    private double ewma;
+    private long ewmaTime = Long.MIN_VALUE;
+
+    public SlidingWindow(Span span) {
+        this.span = span;
+        this.slotWidth = span.seconds / SLOTS;
+        // The EWMA forgets with the same horizon as the window
+        this.timeConstant = span.seconds;
+        Arrays.fill(slotIds, Long.MIN_VALUE);
+    }
+
+    public void add(long epochSecond, int value) {
+        long slot = Math.floorDiv(epochSecond, slotWidth);
+        if (newestSlot != Long.MIN_VALUE && slot <= newestSlot - SLOTS) return; // already slid out
+
+        int index = (int) Math.floorMod(slot, (long) SLOTS);
+        int offset = (int) (epochSecond - slot * slotWidth);
+        if (slotIds[index] != slot) {
+            // Whatever occupied this position is at least a full window older
+            slotIds[index] = slot;
+            sums[index] = 0;
+            counts[index] = 0;
+        }
+        if (counts[index] == 0 || offset < firstOffsets[index]) {
+            firstOffsets[index] = offset;
+            firsts[index] = value;
+        }
+        // Ties resolve like a time-ordered scan: earliest arrival is first, latest arrival is last
+        if (counts[index] == 0 || offset >= lastOffsets[index]) {
+            lastOffsets[index] = offset;
+            lasts[index] = value;
+        }
+        sums[index] += value;
+        counts[index]++;
+        newestSlot = Math.max(newestSlot, slot);
+
+        updateEwma(epochSecond, value);
+    }
+
+    // Irregularly spaced EWMA; late points are left out rather than rewinding the average
+    private void updateEwma(long epochSecond, int value) {
+        if (ewmaTime == Long.MIN_VALUE) {
+            ewma = value;
+            ewmaTime = epochSecond;
+            return;
+        }
+        if (epochSecond < ewmaTime) return;
+        // Samples sharing a timestamp still count, as if a minute apart (the log's precision)
+        long elapsed = Math.max(60, epochSecond - ewmaTime);
+        double alpha = 1 - Math.exp(-elapsed / timeConstant);
+        ewma += alpha * (value - ewma);
+        ewmaTime = epochSecond;
+    }
+
+    /** Window ending at the slot containing {@code now}; points newer than now are included. */
+    public WindowStats stats(long now) {
+        long oldestSlot = Math.floorDiv(now, slotWidth) - SLOTS + 1;
+        int count = 0;
+        long sum = 0;
+        long firstSlot = Long.MAX_VALUE;
+        long lastSlot = Long.MIN_VALUE;
+        int firstIndex = -1;
+        int lastIndex = -1;
+
+        for (int i = 0; i < SLOTS; i++) {
+            if (counts[i] == 0 || slotIds[i] < oldestSlot) continue;
+            count += counts[i];
+            sum += sums[i];
+            if (slotIds[i] < firstSlot) {
+                firstSlot = slotIds[i];
+                firstIndex = i;
+            }
+            if (slotIds[i] > lastSlot) {
+                lastSlot = slotIds[i];
+                lastIndex = i;
+            }
+        }
+        if (count == 0) return new WindowStats(span, 0, 0, 0, 0, 0, 0, ewma);
+        return new WindowStats(span, count, sum,
+            firstSlot * slotWidth + firstOffsets[firstIndex], firsts[firstIndex],
+            lastSlot * slotWidth + lastOffsets[lastIndex], lasts[lastIndex], ewma);
+    }
+
+    public Span getSpan() { return span; }
+}
@@ -290,6 +290,11 @@ public class SocialMediaManager {
                             break;
     
                         case 9:
+                            admin.handleImportScheduledPosts(sc);
+                            break;
+    
+                        case 10:
+                            admin.shutdown();
                             continueRunning = false;
                             break;
     
@@ -297,7 +302,7 @@ public class SocialMediaManager {
                             System.out.println("Invalid option.");
                     }
     
-                    if (adminAction != 9) {
+                    if (adminAction != 10) {
                         admin.saveProfileDataToCSV();
                     }
                 }
@@ -0,0 +1,39 @@
+package socialmedia;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Maps repeated strings (content ids, platforms, metric names) to dense int codes
+ * so columnar storage can keep an int per row instead of a String reference.
+ */
+public class StringDictionary {
+    private final Map<String, Integer> codes = new HashMap<>();
+    private final List<String> values = new ArrayList<>();
+    
+    public int encode(String value) {
+        Integer code = codes.get(value);
+        if (code == null) {
+            code = values.size();
+            codes.put(value, code);
+            values.add(value);
+        }
+        return code;
+    }
+    
+    // Returns -1 when the value has never been encoded
+    public int lookup(String value) {
+        Integer code = codes.get(value);
+        return code == null ? -1 : code;
+    }
+    
+    public String decode(int code) {
+        return values.get(code);
+    }
+    
+    public int size() {
+        return values.size();
+    }
+}
@@ -0,0 +1,48 @@
+package socialmedia;
+
+/**
+ * Token bucket that hands out reservations instead of refusals.
+ * Every reserve() takes a token, letting the balance go negative; the returned time is
+ * when that token will actually have been refilled. Callers that wait until then see a
+ * steady {@code ratePerSecond} after an initial burst of {@code capacity}, and a backlog
+ * is spread out in one pass instead of being retried.
+ */
+public class TokenBucket {
+    private final double ratePerMilli;
+    private final double capacity;
+    private double tokens;
+    private long lastRefill;
+
+    public TokenBucket(double ratePerSecond, int capacity, long nowMillis) {
+        if (ratePerSecond <= 0 || capacity < 1) {
+            throw new IllegalArgumentException("Need a positive rate and capacity, got " + ratePerSecond + " and " + capacity);
+        }
+        this.ratePerMilli = ratePerSecond / 1000;
+        this.capacity = capacity;
+        this.tokens = capacity;
+        this.lastRefill = nowMillis;
+    }
+
+    /** Takes one token and returns the time it is available: {@code nowMillis} if it already is. */
+    public synchronized long reserve(long nowMillis) {
+        refill(nowMillis);
+        tokens -= 1;
+        if (tokens >= 0) return nowMillis;
+        return nowMillis + (long) Math.ceil(-tokens / ratePerMilli);
+    }
+
+    // Tokens available now; negative while reservations are outstanding
+    public synchronized double available(long nowMillis) {
+        refill(nowMillis);
+        return tokens;
+    }
+
+    private void refill(long nowMillis) {
+        if (nowMillis <= lastRefill) return;
+        tokens = Math.min(capacity, tokens + (nowMillis - lastRefill) * ratePerMilli);
+        lastRefill = nowMillis;
+    }
+
+    public double getRatePerSecond() { return ratePerMilli * 1000; }
+    public int getCapacity() { return (int) capacity; }
+}
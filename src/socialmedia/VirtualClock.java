@@ -0,0 +1,73 @@
+package socialmedia;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A clock that only moves when told to, for soak-testing the scheduler without waiting.
+ * Time never goes backwards. Listeners run after every move, so a sleeping dispatcher
+ * can be woken to look at the new time.
+ */
+public class VirtualClock extends Clock {
+    private final AtomicLong millis;
+    private final ZoneId zone;
+    private final List<Runnable> listeners;
+
+    public VirtualClock(LocalDateTime start) {
+        this(new AtomicLong(start.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli()),
+            ZoneId.systemDefault(), new CopyOnWriteArrayList<>());
+    }
+
+    private VirtualClock(AtomicLong millis, ZoneId zone, List<Runnable> listeners) {
+        this.millis = millis;
+        this.zone = zone;
+        this.listeners = listeners;
+    }
+
+    // Moves forward to epochMillis; earlier times are ignored
+    public void advanceTo(long epochMillis) {
+        if (millis.accumulateAndGet(epochMillis, Math::max) == epochMillis) fireListeners();
+    }
+
+    public void advanceBy(long deltaMillis) {
+        if (deltaMillis <= 0) return;
+        millis.addAndGet(deltaMillis);
+        fireListeners();
+    }
+
+    public void addListener(Runnable listener) {
+        listeners.add(listener);
+    }
+
+    private void fireListeners() {
+        for (Runnable listener : listeners) {
+            listener.run();
+        }
+    }
+
+    @Override
+    public long millis() {
+        return millis.get();
+    }
+
+    @Override
+    public Instant instant() {
+        return Instant.ofEpochMilli(millis.get());
+    }
+
+    @Override
+    public ZoneId getZone() {
+        return zone;
+    }
+
+    // Shares the time and listeners; only the zone used for local date-times differs
+    @Override
+    public Clock withZone(ZoneId zone) {
+        return zone.equals(this.zone) ? this : new VirtualClock(millis, zone, listeners);
+    }
+}
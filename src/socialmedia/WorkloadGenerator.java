@@ -0,0 +1,304 @@
+package socialmedia;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Deterministic synthetic analytics workload for benchmarks.
+ * Every user is generated from its own random stream derived from (seed, user index),
+ * so the output is identical for a given seed whatever the thread count.
+ * Users are produced in blocks on all cores and streamed straight into segments
+ * (or CSV parts), so memory use is bounded by one block per thread.
+ *
+ * Usage:
+ *   java socialmedia.WorkloadGenerator segment <segmentDir> <users> <days> [seed] [samplesPerDay]
+ *   java socialmedia.WorkloadGenerator csv <output.csv> <users> <days> [seed] [samplesPerDay]
+ */
+public class WorkloadGenerator {
+    private static final long MAX_ROWS_PER_BLOCK = 5_000_000;
+    private static final String[] METRICS = {"followers", "likes", "comments", "shares"};
+
+    public static class Summary {
+        public final long users;
+        public final long rows;
+        public final int files;
+        public final long elapsedMillis;
+
+        Summary(long users, long rows, int files, long elapsedMillis) {
+            this.users = users;
+            this.rows = rows;
+            this.files = files;
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        public double rowsPerSecond() {
+            return elapsedMillis == 0 ? rows * 1000.0 : rows * 1000.0 / elapsedMillis;
+        }
+    }
+
+    private final long seed;
+    private long users = 1000;
+    private int days = 30;
+    private int samplesPerDay = 24;
+    private int postsPerDay = 2;
+    private double churnRate = 0.15;       // share of users that stop posting during the period
+    private double lateJoinRate = 0.2;     // share of users that start during the period
+    private double viralProbability = 0.01; // chance per user per day of a viral spike
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private long endEpochSecond = MetricSeries.toEpochSecond(LocalDateTime.now().truncatedTo(ChronoUnit.DAYS));
+
+    public WorkloadGenerator(long seed) {
+        this.seed = seed;
+    }
+
+    public void setUsers(long users) { this.users = Math.max(1, users); }
+    public void setDays(int days) { this.days = Math.max(1, days); }
+    public void setSamplesPerDay(int samplesPerDay) { this.samplesPerDay = Math.max(1, Math.min(1440, samplesPerDay)); }
+    public void setPostsPerDay(int postsPerDay) { this.postsPerDay = Math.max(1, postsPerDay); }
+    public void setChurnRate(double churnRate) { this.churnRate = churnRate; }
+    public void setLateJoinRate(double lateJoinRate) { this.lateJoinRate = lateJoinRate; }
+    public void setViralProbability(double viralProbability) { this.viralProbability = viralProbability; }
+    public void setThreads(int threads) { this.threads = Math.max(1, threads); }
+    // Part of the output: fix it together with the seed for reproducible runs
+    public void setEnd(LocalDateTime end) { this.endEpochSecond = MetricSeries.toEpochSecond(end.truncatedTo(ChronoUnit.MINUTES)); }
+
+    public static String username(long userIndex) {
+        return "user" + userIndex;
+    }
+
+    /**
+     * Emits every point of one user in time order.
+     * Followers drift with a per-user growth rate; engagement follows a daily cycle
+     * peaking mid-afternoon, and viral spikes multiply it and pull in followers.
+     */
+    public long generateUser(long userIndex, String username, AnalyticsLogLoader.RowSink sink) {
+        SplittableRandom random = new SplittableRandom(HyperLogLog.mix64(seed ^ HyperLogLog.mix64(userIndex)));
+        long start = endEpochSecond - days * 86400L;
+        int firstDay = random.nextDouble() < lateJoinRate ? random.nextInt(days) : 0;
+        int lastDay = random.nextDouble() < churnRate ? firstDay + random.nextInt(days - firstDay) : days - 1;
+
+        boolean onInstagram = random.nextDouble() < 0.85;
+        boolean onX = !onInstagram || random.nextDouble() < 0.6;
+        long rows = 0;
+        if (onInstagram) rows += generatePlatform(random, userIndex, username, "Instagram", start, firstDay, lastDay, sink);
+        if (onX) rows += generatePlatform(random, userIndex, username, "X", start, firstDay, lastDay, sink);
+        return rows;
+    }
+
+    private long generatePlatform(SplittableRandom random, long userIndex, String username, String platform,
+                                  long start, int firstDay, int lastDay, AnalyticsLogLoader.RowSink sink) {
+        // Heavy-tailed audience: most accounts are small, a few are very large
+        double followers = Math.max(10, Math.exp(Math.log(800) + 1.5 * random.nextGaussian()));
+        double engagement = 0.02 + random.nextDouble() * 0.06;
+        double dailyGrowth = 0.001 + 0.004 * random.nextGaussian();
+        long interval = 86400L / samplesPerDay;
+        int samplesPerPost = Math.max(1, samplesPerDay / postsPerDay);
+
+        long spikeStart = Long.MIN_VALUE;
+        double spikeMagnitude = 0;
+        long post = 0;
+        String contentId = null;
+        long rows = 0;
+
+        for (int day = firstDay; day <= lastDay; day++) {
+            long dayStart = start + day * 86400L;
+            if (random.nextDouble() < viralProbability) {
+                spikeStart = dayStart + random.nextInt(86400) / 60 * 60;
+                // Pareto-distributed size: most spikes are modest, a few are huge
+                spikeMagnitude = 4 / Math.pow(1 - random.nextDouble(), 0.6);
+            }
+
+            for (int sample = 0; sample < samplesPerDay; sample++) {
+                if (sample % samplesPerPost == 0 || contentId == null) {
+                    contentId = "post_" + userIndex + "_" + platform.charAt(0) + post++;
+                }
+                long jitter = interval >= 120 ? random.nextLong(interval / 60) * 60 : 0;
+                long timestamp = dayStart + sample * interval + jitter;
+                if (timestamp >= endEpochSecond) break;
+
+                double hourOfDay = (timestamp - dayStart) / 3600.0;
+                double diurnal = 1 + 0.6 * Math.sin(2 * Math.PI * (hourOfDay - 9) / 24);
+                double spike = 1;
+                if (spikeMagnitude > 0 && timestamp >= spikeStart) {
+                    // Six-hour half-life
+                    spike += spikeMagnitude * Math.pow(0.5, (timestamp - spikeStart) / 21600.0);
+                }
+
+                followers *= 1 + dailyGrowth / samplesPerDay;
+                followers += (spike - 1) * followers * engagement * 0.02;
+                followers = Math.max(0, followers);
+
+                double likes = followers * engagement * diurnal * spike * (0.8 + 0.4 * random.nextDouble()) / samplesPerDay * 4;
+                int[] values = {
+                    (int) Math.round(followers),
+                    (int) Math.round(likes),
+                    (int) Math.round(likes * (0.05 + 0.1 * random.nextDouble())),
+                    (int) Math.round(likes * (0.01 + 0.05 * random.nextDouble()) * spike)
+                };
+                for (int m = 0; m < METRICS.length; m++) {
+                    sink.accept(username, platform, METRICS[m], timestamp, values[m], contentId);
+                }
+                rows += METRICS.length;
+            }
+        }
+        return rows;
+    }
+
+    // Users per block so that one block fits a segment of about MAX_ROWS_PER_BLOCK rows
+    private long usersPerBlock() {
+        long rowsPerUser = (long) days * samplesPerDay * METRICS.length * 2;
+        return Math.max(1, MAX_ROWS_PER_BLOCK / Math.max(1, rowsPerUser));
+    }
+
+    public Summary writeSegments(SegmentDirectory target) throws IOException {
+        long firstSequence = target.nextSequence();
+        return runBlocks((block, fromUser, toUser) -> {
+            AnalyticsSegment.Builder builder = new AnalyticsSegment.Builder();
+            for (long user = fromUser; user < toUser; user++) {
+                generateUser(user, username(user), builder::add);
+            }
+            if (!builder.isEmpty()) {
+                builder.writeTo(target.fileFor(firstSequence + block));
+            }
+            return builder.getRowCount();
+        });
+    }
+
+    // Blocks are written as numbered parts in parallel, then concatenated in order
+    public Summary writeCsv(File output) throws IOException {
+        File dir = output.getAbsoluteFile().getParentFile();
+        if (dir != null && !dir.exists()) dir.mkdirs();
+
+        Summary summary = runBlocks((block, fromUser, toUser) -> {
+            long[] rows = {0};
+            try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(
+                    new FileOutputStream(partFile(output, block)), StandardCharsets.UTF_8), 1 << 16)) {
+                StringBuilder line = new StringBuilder(96);
+                for (long user = fromUser; user < toUser; user++) {
+                    generateUser(user, username(user), (username, platform, metricType, epochSecond, value, contentId) -> {
+                        line.setLength(0);
+                        line.append(username).append(',');
+                        appendTimestamp(line, epochSecond);
+                        line.append(',').append(platform).append(',').append(metricType).append(',')
+                            .append(value).append(',').append(contentId).append('\n');
+                        try {
+                            writer.append(line);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                        rows[0]++;
+                    });
+                }
+            }
+            return rows[0];
+        });
+
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(output), 1 << 16)) {
+            out.write((AnalyticsJournal.HEADER + "\n").getBytes(StandardCharsets.UTF_8));
+            for (int block = 0; block < summary.files; block++) {
+                File part = partFile(output, block);
+                Files.copy(part.toPath(), out);
+                Files.delete(part.toPath());
+            }
+        }
+        return new Summary(summary.users, summary.rows, 1, summary.elapsedMillis);
+    }
+
+    private static File partFile(File output, long block) {
+        return new File(output.getPath() + ".part" + block);
+    }
+
+    // Same layout as the log's "yyyy-MM-dd HH:mm", without a formatter per row
+    private static void appendTimestamp(StringBuilder line, long epochSecond) {
+        LocalDateTime time = MetricSeries.toLocalDateTime(epochSecond);
+        line.append(time.getYear()).append('-');
+        pad(line, time.getMonthValue()).append('-');
+        pad(line, time.getDayOfMonth()).append(' ');
+        pad(line, time.getHour()).append(':');
+        pad(line, time.getMinute());
+    }
+
+    private static StringBuilder pad(StringBuilder line, int value) {
+        if (value < 10) line.append('0');
+        return line.append(value);
+    }
+
+    private interface BlockWriter {
+        long write(int block, long fromUser, long toUser) throws IOException;
+    }
+
+    private Summary runBlocks(BlockWriter writer) throws IOException {
+        long started = System.currentTimeMillis();
+        long perBlock = usersPerBlock();
+        int blocks = (int) ((users + perBlock - 1) / perBlock);
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "WorkloadGenerator");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            List<Future<Long>> results = new ArrayList<>();
+            for (int block = 0; block < blocks; block++) {
+                int index = block;
+                long fromUser = block * perBlock;
+                long toUser = Math.min(users, fromUser + perBlock);
+                results.add(pool.submit(() -> writer.write(index, fromUser, toUser)));
+            }
+            long rows = 0;
+            for (Future<Long> result : results) {
+                rows += result.get();
+            }
+            return new Summary(users, rows, blocks, System.currentTimeMillis() - started);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while generating workload", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause() instanceof UncheckedIOException ? e.getCause().getCause() : e.getCause();
+            throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 4) {
+            System.out.println("Usage: WorkloadGenerator segment <segmentDir> <users> <days> [seed] [samplesPerDay]");
+            System.out.println("       WorkloadGenerator csv <output.csv> <users> <days> [seed] [samplesPerDay]");
+            return;
+        }
+
+        try {
+            WorkloadGenerator generator = new WorkloadGenerator(args.length > 4 ? Long.parseLong(args[4]) : 42);
+            generator.setUsers(Long.parseLong(args[2]));
+            generator.setDays(Integer.parseInt(args[3]));
+            if (args.length > 5) generator.setSamplesPerDay(Integer.parseInt(args[5]));
+
+            Summary summary;
+            if (args[0].equals("segment")) {
+                summary = generator.writeSegments(new SegmentDirectory(args[1]));
+            } else if (args[0].equals("csv")) {
+                summary = generator.writeCsv(new File(args[1]));
+            } else {
+                System.out.println("Unknown format: " + args[0]);
+                return;
+            }
+            System.out.printf(">> Generated %d rows for %d users into %d file(s) in %d ms (%.0f rows/sec, %d threads)\n",
+                summary.rows, summary.users, summary.files, summary.elapsedMillis, summary.rowsPerSecond(), generator.threads);
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid number: " + e.getMessage());
+        } catch (IOException e) {
+            System.err.println("Generation failed: " + e.getMessage());
+        }
+    }
+}